@@ -17,25 +17,21 @@
 
 package it.units.erallab.hmsrobots.behavior;
 
-import com.google.common.collect.Range;
 import it.units.erallab.hmsrobots.core.geometry.BoundingBox;
 import it.units.erallab.hmsrobots.core.geometry.Point2;
 import it.units.erallab.hmsrobots.core.geometry.Shape;
 import it.units.erallab.hmsrobots.core.snapshots.RobotShape;
 import it.units.erallab.hmsrobots.core.snapshots.Snapshot;
 import it.units.erallab.hmsrobots.core.snapshots.VoxelPoly;
+import it.units.erallab.hmsrobots.util.BooleanGrid;
 import it.units.erallab.hmsrobots.util.Domain;
 import it.units.erallab.hmsrobots.util.Grid;
-import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
-import org.apache.commons.math3.transform.TransformType;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 /**
  * @author "Eric Medvet" on 2021/09/16 for 2dhmsr
@@ -79,11 +75,40 @@ public class BehaviorUtils {
   }
 
   public static Grid<Boolean> computePosture(Collection<? extends Shape> shapes, int n) {
-    Collection<BoundingBox> boxes = shapes.stream().map(Shape::boundingBox).collect(Collectors.toList());
-    double robotMinX = boxes.stream().mapToDouble(b -> b.min.x).min().orElseThrow(() -> new IllegalArgumentException("Empty robot"));
-    double robotMaxX = boxes.stream().mapToDouble(b -> b.max.x).max().orElseThrow(() -> new IllegalArgumentException("Empty robot"));
-    double robotMinY = boxes.stream().mapToDouble(b -> b.min.y).min().orElseThrow(() -> new IllegalArgumentException("Empty robot"));
-    double robotMaxY = boxes.stream().mapToDouble(b -> b.max.y).max().orElseThrow(() -> new IllegalArgumentException("Empty robot"));
+    return computePostureMask(shapes, n).toGrid();
+  }
+
+  public static BooleanGrid computePostureMask(Collection<? extends Shape> shapes, int n) {
+    double[] minXs = new double[shapes.size()];
+    double[] maxXs = new double[shapes.size()];
+    double[] minYs = new double[shapes.size()];
+    double[] maxYs = new double[shapes.size()];
+    int c = 0;
+    for (Shape shape : shapes) {
+      BoundingBox box = shape.boundingBox();
+      minXs[c] = box.min.x;
+      maxXs[c] = box.max.x;
+      minYs[c] = box.min.y;
+      maxYs[c] = box.max.y;
+      c = c + 1;
+    }
+    return computePostureMask(minXs, maxXs, minYs, maxYs, n);
+  }
+
+  public static BooleanGrid computePostureMask(double[] minXs, double[] maxXs, double[] minYs, double[] maxYs, int n) {
+    if (minXs.length == 0) {
+      throw new IllegalArgumentException("Empty robot");
+    }
+    double robotMinX = Double.POSITIVE_INFINITY;
+    double robotMaxX = Double.NEGATIVE_INFINITY;
+    double robotMinY = Double.POSITIVE_INFINITY;
+    double robotMaxY = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < minXs.length; i++) {
+      robotMinX = Math.min(robotMinX, minXs[i]);
+      robotMaxX = Math.max(robotMaxX, maxXs[i]);
+      robotMinY = Math.min(robotMinY, minYs[i]);
+      robotMaxY = Math.max(robotMaxY, maxYs[i]);
+    }
     //adjust box to make it squared
     if ((robotMaxY - robotMinY) < (robotMaxX - robotMinX)) {
       double d = (robotMaxX - robotMinX) - (robotMaxY - robotMinY);
@@ -94,30 +119,51 @@ public class BehaviorUtils {
       robotMaxX = robotMaxX + d / 2;
       robotMinX = robotMinX - d / 2;
     }
-    Grid<Boolean> mask = Grid.create(n, n, false);
-    for (BoundingBox b : boxes) {
-      int minXIndex = (int) Math.round((b.min.x - robotMinX) / (robotMaxX - robotMinX) * (double) (n - 1));
-      int maxXIndex = (int) Math.round((b.max.x - robotMinX) / (robotMaxX - robotMinX) * (double) (n - 1));
-      int minYIndex = (int) Math.round((b.min.y - robotMinY) / (robotMaxY - robotMinY) * (double) (n - 1));
-      int maxYIndex = (int) Math.round((b.max.y - robotMinY) / (robotMaxY - robotMinY) * (double) (n - 1));
-      for (int x = minXIndex; x <= maxXIndex; x++) {
-        for (int y = minYIndex; y <= maxYIndex; y++) {
-          mask.set(x, y, true);
-        }
-      }
+    BooleanGrid mask = new BooleanGrid(n, n);
+    for (int i = 0; i < minXs.length; i++) {
+      mask.fill(
+          (int) Math.round((minXs[i] - robotMinX) / (robotMaxX - robotMinX) * (double) (n - 1)),
+          (int) Math.round((minYs[i] - robotMinY) / (robotMaxY - robotMinY) * (double) (n - 1)),
+          (int) Math.round((maxXs[i] - robotMinX) / (robotMaxX - robotMinX) * (double) (n - 1)),
+          (int) Math.round((maxYs[i] - robotMinY) / (robotMaxY - robotMinY) * (double) (n - 1)),
+          true
+      );
     }
     return mask;
   }
 
   public static Footprint computeFootprint(Collection<? extends VoxelPoly> polies, int n) {
-    Collection<BoundingBox> boxes = polies.stream().map(Shape::boundingBox).collect(Collectors.toList());
-    double robotMinX = boxes.stream().mapToDouble(b -> b.min.x).min().orElseThrow(() -> new IllegalArgumentException("Empty robot"));
-    double robotMaxX = boxes.stream().mapToDouble(b -> b.max.x).max().orElseThrow(() -> new IllegalArgumentException("Empty robot"));
-    List<Domain> contacts = polies.stream().filter(VoxelPoly::isTouchingGround).map(s -> Domain.of(s.boundingBox().min.x, s.boundingBox().max.x)).collect(Collectors.toList());
+    double[] minXs = new double[polies.size()];
+    double[] maxXs = new double[polies.size()];
+    boolean[] touchings = new boolean[polies.size()];
+    int c = 0;
+    for (VoxelPoly poly : polies) {
+      BoundingBox box = poly.boundingBox();
+      minXs[c] = box.min.x;
+      maxXs[c] = box.max.x;
+      touchings[c] = poly.isTouchingGround();
+      c = c + 1;
+    }
+    return computeFootprint(minXs, maxXs, touchings, n);
+  }
+
+  public static Footprint computeFootprint(double[] minXs, double[] maxXs, boolean[] touchings, int n) {
+    if (minXs.length == 0) {
+      throw new IllegalArgumentException("Empty robot");
+    }
+    double robotMinX = Double.POSITIVE_INFINITY;
+    double robotMaxX = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < minXs.length; i++) {
+      robotMinX = Math.min(robotMinX, minXs[i]);
+      robotMaxX = Math.max(robotMaxX, maxXs[i]);
+    }
     boolean[] mask = new boolean[n];
-    for (Domain contact : contacts) {
-      int minIndex = (int) Math.round((contact.getMin() - robotMinX) / (robotMaxX - robotMinX) * (double) (n - 1));
-      int maxIndex = (int) Math.round((contact.getMax() - robotMinX) / (robotMaxX - robotMinX) * (double) (n - 1));
+    for (int i = 0; i < minXs.length; i++) {
+      if (!touchings[i]) {
+        continue;
+      }
+      int minIndex = (int) Math.round((minXs[i] - robotMinX) / (robotMaxX - robotMinX) * (double) (n - 1));
+      int maxIndex = (int) Math.round((maxXs[i] - robotMinX) / (robotMaxX - robotMinX) * (double) (n - 1));
       for (int x = minIndex; x <= Math.min(maxIndex, n - 1); x++) {
         mask[x] = true;
       }
@@ -126,100 +172,141 @@ public class BehaviorUtils {
   }
 
   public static Grid<Boolean> computeAveragePosture(Collection<Grid<Boolean>> postures) {
-    int w = postures.iterator().next().getW();
-    int h = postures.iterator().next().getH();
-    return Grid.create(
-        w,
-        h,
-        (x, y) -> postures.stream()
-            .mapToDouble(p -> p.get(x, y) ? 1d : 0d)
-            .average()
-            .orElse(0d) > 0.5d
-    );
+    return computeAveragePostureMask(postures.stream().map(BooleanGrid::create).collect(Collectors.toList())).toGrid();
   }
 
-  public static SortedMap<Double, Double> computeSpectrum(SortedMap<Double, Double> signal) {
-    List<Double> intervals = new ArrayList<>(signal.size() - 1);
-    double previousT = Double.NaN;
-    for (double t : signal.keySet()) {
-      if (!Double.isNaN(previousT)) {
-        intervals.add(t - previousT);
+  public static BooleanGrid computeAveragePostureMask(Collection<BooleanGrid> postures) {
+    BooleanGrid first = postures.iterator().next();
+    int[] counts = new int[first.getW() * first.getH()];
+    for (BooleanGrid posture : postures) {
+      posture.addTo(counts);
+    }
+    BooleanGrid average = new BooleanGrid(first.getW(), first.getH());
+    for (int i = 0; i < counts.length; i++) {
+      if ((double) counts[i] / (double) postures.size() > 0.5d) {
+        average.set(i % first.getW(), i / first.getW(), true);
       }
-      previousT = t;
     }
-    return computeSpectrum(
-        signal.values().stream().mapToDouble(d -> d).toArray(),
-        intervals.stream().mapToDouble(d -> d).average().orElse(0d)
-    );
+    return average;
   }
 
-  public static SortedMap<Double, Double> computeSpectrum(double[] signal, double dT) {
-    // pad
-    int paddedSize = (int) Math.pow(2d, Math.ceil(Math.log(signal.length) / Math.log(2d)));
-    if (paddedSize != signal.length) {
-      double[] paddedSignal = new double[paddedSize];
-      System.arraycopy(signal, 0, paddedSignal, 0, signal.length);
-      signal = paddedSignal;
+  public static double computeAverageInterval(Collection<Double> ts) {
+    return computeAverageInterval(toArray(ts));
+  }
+
+  public static double computeAverageInterval(double[] ts) {
+    double[] intervals = new double[Math.max(0, ts.length - 1)];
+    for (int i = 1; i < ts.length; i++) {
+      intervals[i - 1] = ts[i] - ts[i - 1];
     }
-    // compute fft
-    FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-    List<Double> f = Stream.of(fft.transform(signal, TransformType.FORWARD))
-        .map(Complex::abs)
-        .collect(Collectors.toList())
-        .subList(0, paddedSize / 2 + 1);
+    return Arrays.stream(intervals).average().orElse(0d);
+  }
+
+  public static SortedMap<Double, Double> computeSpectrum(SortedMap<Double, Double> signal) {
+    return computeSpectrum(toArray(signal.values()), computeAverageInterval(signal.keySet()));
+  }
+
+  public static SortedMap<Double, Double> computeSpectrum(double[] signal, double dT) {
+    double[] magnitudes = SpectrumEngine.get().magnitudes(signal, signal.length);
+    int nOfFrequencies = SpectrumEngine.nOfFrequencies(signal.length);
     SortedMap<Double, Double> spectrum = new TreeMap<>();
-    for (int i = 0; i < f.size(); i++) {
-      spectrum.put(
-          1d / dT / 2d * (double) i / (double) f.size(),
-          f.get(i)
-      );
+    for (int i = 0; i < nOfFrequencies; i++) {
+      spectrum.put(SpectrumEngine.frequency(i, nOfFrequencies, dT), magnitudes[i]);
     }
     return spectrum;
   }
 
   public static SortedMap<Domain, Double> computeQuantizedSpectrum(SortedMap<Double, Double> signal, double minF, double maxF, int nBins) {
-    SortedMap<Double, Double> spectrum = computeSpectrum(signal);
+    return computeQuantizedSpectrum(toArray(signal.values()), computeAverageInterval(signal.keySet()), minF, maxF, nBins);
+  }
+
+  public static SortedMap<Domain, Double> computeQuantizedSpectrum(double[] signal, double dT, double minF, double maxF, int nBins) {
+    return toQuantizedSpectrum(
+        SpectrumEngine.get().quantizedSpectrum(signal, signal.length, dT, minF, maxF, nBins),
+        minF,
+        maxF
+    );
+  }
+
+  public static SortedMap<Domain, Double> computeQuantizedSpectrum(double[] ts, IntToDoubleFunction signal, double minF, double maxF, int nBins) {
+    double[] values = new double[ts.length];
+    for (int i = 0; i < ts.length; i++) {
+      values[i] = signal.applyAsDouble(i);
+    }
+    return computeQuantizedSpectrum(values, computeAverageInterval(ts), minF, maxF, nBins);
+  }
+
+  public static List<SortedMap<Domain, Double>> computeFootprintsSpectra(double[] ts, IntFunction<Footprint> footprints, double minF, double maxF, int nBins, int n) {
+    boolean[][] masks = new boolean[ts.length][];
+    for (int i = 0; i < ts.length; i++) {
+      masks[i] = footprints.apply(i).getMask();
+    }
+    List<SortedMap<Domain, Double>> spectra = new ArrayList<>(n);
+    for (int j = 0; j < n; j++) {
+      int footprintIndex = j;
+      spectra.add(computeQuantizedSpectrum(ts, i -> masks[i][footprintIndex] ? 1d : 0d, minF, maxF, nBins));
+    }
+    return spectra;
+  }
+
+  public static SortedMap<Domain, Double> toQuantizedSpectrum(double[] bins, double minF, double maxF) {
     SortedMap<Domain, Double> qSpectrum = new TreeMap<>(Comparator.comparingDouble(Domain::getMin));
-    double binSpan = (maxF - minF) / (double) nBins;
-    for (int i = 0; i < nBins; i++) {
-      double binMinF = minF + binSpan * (double) i;
-      double binMaxF = minF + binSpan * ((double) i + 1d);
+    double binSpan = (maxF - minF) / (double) bins.length;
+    for (int i = 0; i < bins.length; i++) {
       qSpectrum.put(
-          Domain.of(binMinF, binMaxF),
-          spectrum.subMap(binMinF, binMaxF).values().stream()
-              .mapToDouble(d -> d)
-              .average()
-              .orElse(0d)
+          Domain.of(minF + binSpan * (double) i, minF + binSpan * ((double) i + 1d)),
+          bins[i]
       );
     }
     return qSpectrum;
   }
 
+  private static double[] toArray(Collection<Double> values) {
+    double[] array = new double[values.size()];
+    int i = 0;
+    for (double value : values) {
+      array[i] = value;
+      i = i + 1;
+    }
+    return array;
+  }
+
   public static Gait computeMainGait(double interval, double longestInterval, SortedMap<Double, Collection<? extends VoxelPoly>> polies, int n) {
-    List<Gait> gaits = computeGaits(
-        computeQuantizedFootprints(interval, polies, n),
+    return computeMainGait(interval, longestInterval, computeFootprints(polies, n));
+  }
+
+  public static Gait computeMainGait(double interval, double longestInterval, SortedMap<Double, Footprint> footprints) {
+    return GaitEngine.mainGait(computeGaits(
+        computeQuantizedFootprints(interval, footprints),
         2,
         (int) Math.round(longestInterval / interval),
         interval
-    );
-    if (gaits.isEmpty()) {
-      return null;
+    ));
+  }
+
+  public static SortedMap<Double, Footprint> computeFootprints(SortedMap<Double, Collection<? extends VoxelPoly>> polies, int n) {
+    SortedMap<Double, Footprint> footprints = new TreeMap<>();
+    for (Map.Entry<Double, Collection<? extends VoxelPoly>> entry : polies.entrySet()) {
+      footprints.put(entry.getKey(), computeFootprint(entry.getValue(), n));
     }
-    gaits.sort(Comparator.comparingDouble(Gait::getDuration).reversed());
-    return gaits.get(0);
+    return footprints;
   }
 
   public static SortedMap<Double, Footprint> computeQuantizedFootprints(double interval, SortedMap<Double, Collection<? extends VoxelPoly>> polies, int n) {
+    return computeQuantizedFootprints(interval, computeFootprints(polies, n));
+  }
+
+  public static SortedMap<Double, Footprint> computeQuantizedFootprints(double interval, SortedMap<Double, Footprint> footprints) {
     SortedMap<Double, Footprint> quantized = new TreeMap<>();
-    for (double t = polies.firstKey(); t <= polies.lastKey(); t = t + interval) {
-      List<Footprint> local = polies.subMap(t, t + interval).values().stream()
-          .map(voxelPolies -> computeFootprint(voxelPolies, n))
-          .collect(Collectors.toList());
+    int n = footprints.get(footprints.firstKey()).length();
+    for (double t = footprints.firstKey(); t <= footprints.lastKey(); t = t + interval) {
+      Collection<Footprint> local = footprints.subMap(t, t + interval).values();
       double[] counts = new double[n];
       double tot = local.size();
-      for (int x = 0; x < n; x++) {
-        final int finalX = x;
-        counts[x] = local.stream().mapToDouble(f -> f.getMask()[finalX] ? 1d : 0d).sum();
+      for (Footprint footprint : local) {
+        for (int x = 0; x < n; x++) {
+          counts[x] = counts[x] + (footprint.getMask()[x] ? 1d : 0d);
+        }
       }
       boolean[] localFootprint = new boolean[n];
       for (int x = 0; x < n; x++) {
@@ -233,70 +320,13 @@ public class BehaviorUtils {
   }
 
   public static List<Gait> computeGaits(SortedMap<Double, Footprint> footprints, int minSequenceLength, int maxSequenceLength, double interval) {
-    // compute subsequences
-    Map<List<Footprint>, List<Range<Double>>> sequences = new HashMap<>();
-    List<Footprint> footprintList = new ArrayList<>(footprints.values());
-    List<Range<Double>> ranges = footprints.keySet().stream()
-        .map(d -> Range.closedOpen(d, d + interval))
-        .collect(Collectors.toList()); // list of range of each footprint
-    for (int l = minSequenceLength; l <= maxSequenceLength; l++) {
-      for (int i = l; i <= footprintList.size(); i++) {
-        List<Footprint> sequence = footprintList.subList(i - l, i);
-        List<Range<Double>> localRanges = sequences.getOrDefault(sequence, new ArrayList<>());
-        // make sure there's no overlap
-        if (localRanges.size() == 0 || localRanges.get(localRanges.size() - 1).upperEndpoint() <= ranges.get(i - l).lowerEndpoint()) {
-          localRanges.add(Range.openClosed(
-              ranges.get(i - l).lowerEndpoint(), // first t of the first footprint
-              ranges.get(i - 1).upperEndpoint() // last t of the last footprint
-          ));
-        }
-        sequences.put(sequence, localRanges);
-      }
-    }
-    // compute median interval
-    List<Double> allIntervals = sequences.values().stream()
-        .map(l -> IntStream.range(0, l.size() - 1)
-            .mapToObj(i -> l.get(i + 1).lowerEndpoint() - l.get(i).lowerEndpoint())
-            .collect(Collectors.toList())
-        ) // stream of List<Double>, each being a list of the intervals of that subsequence
-        .reduce((l1, l2) -> Stream.concat(l1.stream(), l2.stream()).collect(Collectors.toList()))
-        .orElse(List.of());
-    if (allIntervals.isEmpty()) {
-      return List.of();
-    }
-    double modeInterval = mode(allIntervals);
-    // compute gaits
-    return sequences.entrySet().stream()
-        .filter(e -> e.getValue().size() > 1) // discard subsequences observed only once
-        .map(e -> {
-              List<Double> intervals = IntStream.range(0, e.getValue().size() - 1)
-                  .mapToObj(i -> e.getValue().get(i + 1).lowerEndpoint() - e.getValue().get(i).lowerEndpoint())
-                  .collect(Collectors.toList());
-              List<Double> coverages = IntStream.range(0, intervals.size())
-                  .mapToObj(i -> (e.getValue().get(i).upperEndpoint() - e.getValue().get(i).lowerEndpoint()) / intervals.get(i))
-                  .collect(Collectors.toList());
-              double localModeInterval = mode(intervals);
-              return new Gait(
-                  e.getKey(),
-                  localModeInterval,
-                  coverages.stream().mapToDouble(d -> d).average().orElse(0d),
-                  e.getValue().stream().mapToDouble(r -> r.upperEndpoint() - r.lowerEndpoint()).sum(),
-                  (double) intervals.stream().filter(d -> d == localModeInterval).count() / (double) e.getValue().size()
-              );
-            }
-        )
-        .filter(g -> g.getModeInterval() == modeInterval)
-        .collect(Collectors.toList());
-  }
-
-  private static <K> K mode(Collection<K> collection) {
-    return collection.stream()
-        .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
-        .entrySet()
-        .stream()
-        .max(Map.Entry.comparingByValue())
-        .orElseThrow()
-        .getKey();
+    return GaitEngine.computeGaits(
+        footprints.values().toArray(Footprint[]::new),
+        footprints.keySet().stream().mapToDouble(Double::doubleValue).toArray(),
+        minSequenceLength,
+        maxSequenceLength,
+        interval
+    );
   }
 
   public static Function<Snapshot, Grid<? extends VoxelPoly>> voxelPolyGrid() {
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.behavior;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Extracts gaits from a sequence of (quantized) footprints. Footprints are encoded as integers and the subsequences
+ * of each length are ranked into equivalence classes by extending the classes of the previous length by one code,
+ * as in prefix-doubling suffix array construction; occurrences and intervals are then tracked with primitive arrays.
+ * Ties in the mode of the intervals are resolved in favor of the shortest interval.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class GaitEngine {
+
+  private GaitEngine() {
+  }
+
+  public static int[] encode(Footprint[] footprints, List<Footprint> dictionary) {
+    Map<Footprint, Integer> codes = new HashMap<>();
+    for (int i = 0; i < dictionary.size(); i++) {
+      codes.put(dictionary.get(i), i);
+    }
+    int[] encoded = new int[footprints.length];
+    for (int i = 0; i < footprints.length; i++) {
+      Integer code = codes.get(footprints[i]);
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.add(footprints[i]);
+        codes.put(footprints[i], code);
+      }
+      encoded[i] = code;
+    }
+    return encoded;
+  }
+
+  public static List<Gait> computeGaits(Footprint[] footprints, double[] ts, int minSequenceLength, int maxSequenceLength, double interval) {
+    if (ts.length != footprints.length) {
+      throw new IllegalArgumentException(String.format(
+          "Wrong number of time instants: %d expected, %d found",
+          footprints.length,
+          ts.length
+      ));
+    }
+    List<Footprint> dictionary = new ArrayList<>();
+    int[] codes = encode(footprints, dictionary);
+    return computeGaits(codes, ts, codes.length, dictionary, minSequenceLength, maxSequenceLength, interval);
+  }
+
+  /**
+   * Computes the gaits on the first {@code length} elements of {@code codes} and {@code ts}, where the code of a
+   * footprint is its index in {@code dictionary}.
+   */
+  public static List<Gait> computeGaits(int[] codes, double[] ts, int length, List<Footprint> dictionary, int minSequenceLength, int maxSequenceLength, double interval) {
+    int n = length;
+    int nOfCodes = dictionary.size();
+    maxSequenceLength = Math.min(maxSequenceLength, n);
+    List<Gait> candidates = new ArrayList<>();
+    double[] allIntervals = new double[0];
+    int nOfAllIntervals = 0;
+    // classes of subsequences of length 1
+    int[] classes = Arrays.copyOf(codes, n);
+    int nOfClasses = nOfCodes;
+    long[] keys = new long[n];
+    double[] lastUppers = new double[n];
+    int[] counts = new int[n];
+    int[] offsets = new int[n + 1];
+    int[] starts = new int[n];
+    boolean[] accepted = new boolean[n];
+    double[] intervals = new double[n];
+    double[] widths = new double[n];
+    double[] sorted = new double[n];
+    for (int l = 1; l <= maxSequenceLength; l++) {
+      int nOfWindows = n - l + 1;
+      if (l > 1) {
+        // extend classes of length l-1 by the code at the end of the window
+        for (int s = 0; s < nOfWindows; s++) {
+          keys[s] = ((long) classes[s] * (long) nOfCodes + (long) codes[s + l - 1]) * (long) n + (long) s;
+        }
+        Arrays.sort(keys, 0, nOfWindows);
+        nOfClasses = 0;
+        long previous = -1;
+        for (int i = 0; i < nOfWindows; i++) {
+          long pair = keys[i] / n;
+          if (i > 0 && pair != previous) {
+            nOfClasses = nOfClasses + 1;
+          }
+          previous = pair;
+          classes[(int) (keys[i] % n)] = nOfClasses;
+        }
+        nOfClasses = nOfClasses + 1;
+      }
+      if (l < minSequenceLength) {
+        continue;
+      }
+      // find non-overlapping occurrences
+      Arrays.fill(lastUppers, 0, nOfClasses, Double.NEGATIVE_INFINITY);
+      Arrays.fill(counts, 0, nOfClasses, 0);
+      for (int s = 0; s < nOfWindows; s++) {
+        int c = classes[s];
+        accepted[s] = lastUppers[c] <= ts[s];
+        if (accepted[s]) {
+          lastUppers[c] = ts[s + l - 1] + interval;
+          counts[c] = counts[c] + 1;
+        }
+      }
+      offsets[0] = 0;
+      for (int c = 0; c < nOfClasses; c++) {
+        offsets[c + 1] = offsets[c] + counts[c];
+      }
+      Arrays.fill(counts, 0, nOfClasses, 0);
+      for (int s = 0; s < nOfWindows; s++) {
+        if (accepted[s]) {
+          int c = classes[s];
+          starts[offsets[c] + counts[c]] = s;
+          counts[c] = counts[c] + 1;
+        }
+      }
+      // compute gait candidates
+      for (int c = 0; c < nOfClasses; c++) {
+        int nOfOccurrences = counts[c];
+        if (nOfOccurrences < 2) {
+          continue;
+        }
+        int first = offsets[c];
+        for (int i = 0; i < nOfOccurrences; i++) {
+          int s = starts[first + i];
+          widths[i] = ts[s + l - 1] + interval - ts[s];
+          if (i < nOfOccurrences - 1) {
+            intervals[i] = ts[starts[first + i + 1]] - ts[s];
+          }
+        }
+        int nOfIntervals = nOfOccurrences - 1;
+        if (allIntervals.length < nOfAllIntervals + nOfIntervals) {
+          allIntervals = Arrays.copyOf(allIntervals, Math.max(allIntervals.length * 2, nOfAllIntervals + nOfIntervals));
+        }
+        System.arraycopy(intervals, 0, allIntervals, nOfAllIntervals, nOfIntervals);
+        nOfAllIntervals = nOfAllIntervals + nOfIntervals;
+        double localModeInterval = mode(intervals, nOfIntervals, sorted);
+        int nOfModeIntervals = 0;
+        for (int i = 0; i < nOfIntervals; i++) {
+          if (intervals[i] == localModeInterval) {
+            nOfModeIntervals = nOfModeIntervals + 1;
+          }
+          intervals[i] = widths[i] / intervals[i];
+        }
+        int s = starts[first];
+        candidates.add(new Gait(
+            Arrays.stream(codes, s, s + l).mapToObj(dictionary::get).collect(Collectors.toUnmodifiableList()),
+            localModeInterval,
+            Arrays.stream(intervals, 0, nOfIntervals).average().orElse(0d),
+            Arrays.stream(widths, 0, nOfOccurrences).sum(),
+            (double) nOfModeIntervals / (double) nOfOccurrences
+        ));
+      }
+    }
+    if (nOfAllIntervals == 0) {
+      return List.of();
+    }
+    double modeInterval = mode(allIntervals, nOfAllIntervals, new double[nOfAllIntervals]);
+    List<Gait> gaits = new ArrayList<>();
+    for (Gait candidate : candidates) {
+      if (candidate.getModeInterval() == modeInterval) {
+        gaits.add(candidate);
+      }
+    }
+    return gaits;
+  }
+
+  public static Gait mainGait(List<Gait> gaits) {
+    Gait mainGait = null;
+    for (Gait gait : gaits) {
+      if (mainGait == null || gait.getDuration() > mainGait.getDuration()) {
+        mainGait = gait;
+      }
+    }
+    return mainGait;
+  }
+
+  private static double mode(double[] values, int length, double[] buffer) {
+    System.arraycopy(values, 0, buffer, 0, length);
+    Arrays.sort(buffer, 0, length);
+    double mode = buffer[0];
+    int modeCount = 0;
+    int count = 0;
+    for (int i = 0; i < length; i++) {
+      count = (i > 0 && buffer[i] == buffer[i - 1]) ? (count + 1) : 1;
+      if (count > modeCount) {
+        modeCount = count;
+        mode = buffer[i];
+      }
+    }
+    return mode;
+  }
+
+}
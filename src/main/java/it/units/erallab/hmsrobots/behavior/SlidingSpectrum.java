@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.behavior;
+
+import it.units.erallab.hmsrobots.util.Domain;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.SortedMap;
+
+/**
+ * Incrementally computes the spectrum of the last {@code windowSize} samples of a signal sampled every {@code dT}, as
+ * the DFT magnitudes at the central frequencies of {@code nBins} equal bins spanning {@code [minF, maxF[}. Each new
+ * sample updates the bins with a sliding DFT in {@code O(nBins)}; the bins are recomputed from scratch once every
+ * {@code windowSize} samples to prevent the accumulation of rounding errors. Before the window is full, the missing
+ * samples are considered to be 0.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class SlidingSpectrum implements Serializable {
+
+  private final int windowSize;
+  private final double dT;
+  private final double minF;
+  private final double maxF;
+  private final int nBins;
+
+  private final double[] rotationRe;
+  private final double[] rotationIm;
+  private final double[] lastRe;
+  private final double[] lastIm;
+  private final double[] re;
+  private final double[] im;
+  private final double[] window;
+  private final double[] magnitudes;
+  private int oldest;
+  private int nOfUpdates;
+
+  public SlidingSpectrum(int windowSize, double dT, double minF, double maxF, int nBins) {
+    if (windowSize < 1) {
+      throw new IllegalArgumentException(String.format("Window size must be positive: %d found", windowSize));
+    }
+    this.windowSize = windowSize;
+    this.dT = dT;
+    this.minF = minF;
+    this.maxF = maxF;
+    this.nBins = nBins;
+    rotationRe = new double[nBins];
+    rotationIm = new double[nBins];
+    lastRe = new double[nBins];
+    lastIm = new double[nBins];
+    double binSpan = (maxF - minF) / (double) nBins;
+    for (int b = 0; b < nBins; b++) {
+      double omega = 2d * Math.PI * (minF + binSpan * ((double) b + 0.5d)) * dT;
+      rotationRe[b] = Math.cos(omega);
+      rotationIm[b] = Math.sin(omega);
+      lastRe[b] = Math.cos(-omega * (double) (windowSize - 1));
+      lastIm[b] = Math.sin(-omega * (double) (windowSize - 1));
+    }
+    re = new double[nBins];
+    im = new double[nBins];
+    window = new double[windowSize];
+    magnitudes = new double[nBins];
+    reset();
+  }
+
+  public void reset() {
+    Arrays.fill(re, 0d);
+    Arrays.fill(im, 0d);
+    Arrays.fill(window, 0d);
+    oldest = 0;
+    nOfUpdates = 0;
+  }
+
+  public void add(double value) {
+    double removed = window[oldest];
+    window[oldest] = value;
+    oldest = (oldest + 1) % windowSize;
+    nOfUpdates = nOfUpdates + 1;
+    if (nOfUpdates == windowSize) {
+      recompute();
+      return;
+    }
+    for (int b = 0; b < nBins; b++) {
+      double r = re[b] - removed;
+      double i = im[b];
+      re[b] = r * rotationRe[b] - i * rotationIm[b] + value * lastRe[b];
+      im[b] = r * rotationIm[b] + i * rotationRe[b] + value * lastIm[b];
+    }
+  }
+
+  private void recompute() {
+    nOfUpdates = 0;
+    for (int b = 0; b < nBins; b++) {
+      // rotate the phasor step by step instead of calling cos() and sin() for each sample
+      double pRe = 1d;
+      double pIm = 0d;
+      double sumRe = 0d;
+      double sumIm = 0d;
+      for (int m = 0; m < windowSize; m++) {
+        double value = window[(oldest + m) % windowSize];
+        sumRe = sumRe + value * pRe;
+        sumIm = sumIm + value * pIm;
+        double nRe = pRe * rotationRe[b] + pIm * rotationIm[b];
+        pIm = pIm * rotationRe[b] - pRe * rotationIm[b];
+        pRe = nRe;
+      }
+      re[b] = sumRe;
+      im[b] = sumIm;
+    }
+  }
+
+  /**
+   * Returns the magnitudes of the bins. The returned array is owned by this object and is overwritten by the next call.
+   */
+  public double[] magnitudes() {
+    for (int b = 0; b < nBins; b++) {
+      magnitudes[b] = Math.hypot(re[b], im[b]);
+    }
+    return magnitudes;
+  }
+
+  public SortedMap<Domain, Double> quantizedSpectrum() {
+    return BehaviorUtils.toQuantizedSpectrum(magnitudes(), minF, maxF);
+  }
+
+  public int getWindowSize() {
+    return windowSize;
+  }
+
+  public double getDT() {
+    return dT;
+  }
+
+  public int getNBins() {
+    return nBins;
+  }
+
+}
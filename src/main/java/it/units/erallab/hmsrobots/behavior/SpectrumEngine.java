@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.behavior;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes magnitude spectra of real signals on primitive arrays with an in-place radix-2 FFT. Plans (twiddle factors
+ * and bit-reversal permutation) are cached per padded size and work buffers are reused across calls, hence an
+ * instance is not thread-safe.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class SpectrumEngine {
+
+  private static final ThreadLocal<SpectrumEngine> INSTANCE = ThreadLocal.withInitial(SpectrumEngine::new);
+
+  private static class Plan {
+    private final int size;
+    private final int[] reversed;
+    private final double[] cos;
+    private final double[] sin;
+
+    private Plan(int size) {
+      this.size = size;
+      int bits = Integer.numberOfTrailingZeros(size);
+      reversed = new int[size];
+      for (int i = 0; i < size; i++) {
+        reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (Integer.SIZE - bits);
+      }
+      cos = new double[size / 2];
+      sin = new double[size / 2];
+      for (int i = 0; i < size / 2; i++) {
+        double angle = -2d * Math.PI * (double) i / (double) size;
+        cos[i] = Math.cos(angle);
+        sin[i] = Math.sin(angle);
+      }
+    }
+  }
+
+  private final Map<Integer, Plan> plans;
+  private double[] re;
+  private double[] im;
+  private double[] magnitudes;
+
+  public SpectrumEngine() {
+    plans = new HashMap<>();
+    re = new double[0];
+    im = new double[0];
+    magnitudes = new double[0];
+  }
+
+  public static SpectrumEngine get() {
+    return INSTANCE.get();
+  }
+
+  public static int paddedSize(int length) {
+    if (length <= 1) {
+      return 1;
+    }
+    return Integer.highestOneBit(length - 1) << 1;
+  }
+
+  public static int nOfFrequencies(int length) {
+    return paddedSize(length) / 2 + 1;
+  }
+
+  public static double frequency(int i, int nOfFrequencies, double dT) {
+    return 1d / dT / 2d * (double) i / (double) nOfFrequencies;
+  }
+
+  /**
+   * Computes the magnitudes of the first {@code paddedSize/2+1} components of the DFT of the signal, zero-padded to
+   * the next power of two. The returned array is owned by this engine and is overwritten by the next call.
+   */
+  public double[] magnitudes(double[] signal, int length) {
+    int size = paddedSize(length);
+    Plan plan = plans.computeIfAbsent(size, Plan::new);
+    if (re.length < size) {
+      re = new double[size];
+      im = new double[size];
+    }
+    for (int i = 0; i < size; i++) {
+      int j = plan.reversed[i];
+      re[i] = j < length ? signal[j] : 0d;
+      im[i] = 0d;
+    }
+    for (int half = 1; half < size; half = half * 2) {
+      int step = size / (half * 2);
+      for (int start = 0; start < size; start = start + half * 2) {
+        for (int k = 0; k < half; k++) {
+          double wRe = plan.cos[k * step];
+          double wIm = plan.sin[k * step];
+          int a = start + k;
+          int b = a + half;
+          double tRe = re[b] * wRe - im[b] * wIm;
+          double tIm = re[b] * wIm + im[b] * wRe;
+          re[b] = re[a] - tRe;
+          im[b] = im[a] - tIm;
+          re[a] = re[a] + tRe;
+          im[a] = im[a] + tIm;
+        }
+      }
+    }
+    int nOfFrequencies = plan.size / 2 + 1;
+    if (magnitudes.length < nOfFrequencies) {
+      magnitudes = new double[nOfFrequencies];
+    }
+    for (int i = 0; i < nOfFrequencies && i < size; i++) {
+      magnitudes[i] = Math.hypot(re[i], im[i]);
+    }
+    return magnitudes;
+  }
+
+  /**
+   * Computes the spectrum of the signal and averages its magnitudes in {@code nBins} equal bins spanning
+   * {@code [minF, maxF[}; empty bins are 0.
+   */
+  public double[] quantizedSpectrum(double[] signal, int length, double dT, double minF, double maxF, int nBins) {
+    return quantizedSpectrum(signal, length, dT, minF, maxF, new double[nBins]);
+  }
+
+  public double[] quantizedSpectrum(double[] signal, int length, double dT, double minF, double maxF, double[] bins) {
+    double[] mags = magnitudes(signal, length);
+    int nOfFrequencies = nOfFrequencies(length);
+    int nBins = bins.length;
+    double binSpan = (maxF - minF) / (double) nBins;
+    int i = 0;
+    for (int bin = 0; bin < nBins; bin++) {
+      double binMinF = minF + binSpan * (double) bin;
+      double binMaxF = minF + binSpan * ((double) bin + 1d);
+      while (i < nOfFrequencies && frequency(i, nOfFrequencies, dT) < binMinF) {
+        i = i + 1;
+      }
+      double sum = 0d;
+      int count = 0;
+      for (int j = i; j < nOfFrequencies && frequency(j, nOfFrequencies, dT) < binMaxF; j++) {
+        sum = sum + mags[j];
+        count = count + 1;
+      }
+      bins[bin] = count == 0 ? 0d : sum / (double) count;
+    }
+    return bins;
+  }
+
+}
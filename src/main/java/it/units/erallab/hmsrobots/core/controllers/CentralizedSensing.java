@@ -26,15 +26,18 @@ import it.units.erallab.hmsrobots.core.snapshots.Snapshottable;
 import it.units.erallab.hmsrobots.core.snapshots.StackedScopedReadings;
 import it.units.erallab.hmsrobots.util.Domain;
 import it.units.erallab.hmsrobots.util.Grid;
-import org.apache.commons.lang3.ArrayUtils;
+import it.units.erallab.hmsrobots.util.RandomStreams;
+import it.units.erallab.hmsrobots.util.Seedable;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 /**
  * @author eric
  */
-public class CentralizedSensing implements Controller<SensingVoxel>, Snapshottable {
+public class CentralizedSensing implements Controller<SensingVoxel>, Snapshottable, Seedable {
 
   @JsonProperty
   private final int nOfInputs;
@@ -50,6 +53,11 @@ public class CentralizedSensing implements Controller<SensingVoxel>, Snapshottab
   private Domain[] inputDomains;
   private final Domain[] outputDomains;
 
+  // layout of the voxels, built at the first control step after a reset
+  private transient int[] xs;
+  private transient int[] ys;
+  private transient int[] inputOffsets;
+
   public CentralizedSensing(
       @JsonProperty("nOfInputs") int nOfInputs,
       @JsonProperty("nOfOutputs") int nOfOutputs,
@@ -69,6 +77,11 @@ public class CentralizedSensing implements Controller<SensingVoxel>, Snapshottab
     this(nOfInputs(voxels), nOfOutputs(voxels), function);
   }
 
+  @Override
+  public CentralizedSensing copy() {
+    return new CentralizedSensing(nOfInputs, nOfOutputs, function.copy());
+  }
+
   public static int nOfInputs(Grid<? extends SensingVoxel> voxels) {
     return voxels.values().stream()
         .filter(Objects::nonNull)
@@ -107,37 +120,57 @@ public class CentralizedSensing implements Controller<SensingVoxel>, Snapshottab
     this.function = function;
   }
 
+  private void prepare(Grid<? extends SensingVoxel> voxels) {
+    int n = (int) voxels.count(Objects::nonNull);
+    xs = new int[n];
+    ys = new int[n];
+    inputOffsets = new int[n + 1];
+    List<Domain> domains = new ArrayList<>();
+    int c = 0;
+    for (Grid.Entry<? extends SensingVoxel> entry : voxels) {
+      if (entry.getValue() != null) {
+        xs[c] = entry.getX();
+        ys[c] = entry.getY();
+        for (Sensor sensor : entry.getValue().getSensors()) {
+          domains.addAll(List.of(sensor.getDomains()));
+        }
+        inputOffsets[c + 1] = domains.size();
+        c = c + 1;
+      }
+    }
+    inputDomains = n == 0 ? Domain.of(-1d, 1d, nOfInputs) : domains.toArray(Domain[]::new);
+    inputs = new double[n == 0 ? nOfInputs : inputOffsets[n]];
+  }
+
   @Override
   public void control(double t, Grid<? extends SensingVoxel> voxels) {
+    if (xs == null) {
+      prepare(voxels);
+    }
     //collect inputs
-    inputs = voxels.values().stream()
-        .filter(Objects::nonNull)
-        .map(SensingVoxel::getSensorReadings)
-        .reduce(ArrayUtils::addAll)
-        .orElse(new double[nOfInputs]);
-    inputDomains = voxels.values().stream()
-        .filter(Objects::nonNull)
-        .map(SensingVoxel::getSensors)
-        .flatMap(Collection::stream)
-        .map(Sensor::getDomains)
-        .reduce(ArrayUtils::addAll)
-        .orElse(Domain.of(-1d, 1d, nOfInputs));
+    for (int i = 0; i < xs.length; i++) {
+      voxels.get(xs[i], ys[i]).fillSensorReadings(inputs, inputOffsets[i]);
+    }
     //compute outputs
     outputs = function != null ? function.apply(t, inputs) : new double[nOfOutputs];
     //apply inputs
-    int c = 0;
-    for (SensingVoxel voxel : voxels.values()) {
-      if (voxel != null) {
-        if (c < outputs.length) {
-          voxel.applyForce(outputs[c]);
-          c = c + 1;
-        }
-      }
+    for (int i = 0; i < Math.min(xs.length, outputs.length); i++) {
+      voxels.get(xs[i], ys[i]).applyForce(outputs[i]);
+    }
+  }
+
+  @Override
+  public void setRandomSeed(long seed) {
+    if (function instanceof Seedable) {
+      ((Seedable) function).setRandomSeed(RandomStreams.seed(seed, 0));
     }
   }
 
   @Override
   public void reset() {
+    xs = null;
+    ys = null;
+    inputOffsets = null;
     if (function instanceof Resettable) {
       ((Resettable) function).reset();
     }
@@ -154,8 +187,8 @@ public class CentralizedSensing implements Controller<SensingVoxel>, Snapshottab
   public Snapshot getSnapshot() {
     Snapshot snapshot = new Snapshot(
         new StackedScopedReadings(
-            new ScopedReadings(inputs, inputDomains),
-            new ScopedReadings(outputs, outputDomains)
+            new ScopedReadings(Arrays.copyOf(inputs, inputs.length), inputDomains),
+            new ScopedReadings(Arrays.copyOf(outputs, outputs.length), outputDomains)
         ),
         getClass()
     );
@@ -19,6 +19,7 @@ package it.units.erallab.hmsrobots.core.controllers;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import it.units.erallab.hmsrobots.core.objects.ControllableVoxel;
 import it.units.erallab.hmsrobots.util.Grid;
+import it.units.erallab.hmsrobots.util.SerializationUtils;
 
 import java.io.Serializable;
 
@@ -30,6 +31,14 @@ public interface Controller<V extends ControllableVoxel> extends Resettable, Ser
 
   void control(double t, Grid<? extends V> voxels);
 
+  /**
+   * Returns a new controller with the same configuration of this one, as freshly built, possibly without passing
+   * through serialization.
+   */
+  default Controller<V> copy() {
+    return SerializationUtils.clone(this);
+  }
+
   static <K extends ControllableVoxel> Controller<K> empty() {
     return new Controller<K>() {
       @Override
@@ -39,6 +48,11 @@ public interface Controller<V extends ControllableVoxel> extends Resettable, Ser
       @Override
       public void reset() {
       }
+
+      @Override
+      public Controller<K> copy() {
+        return this;
+      }
     };
   }
 
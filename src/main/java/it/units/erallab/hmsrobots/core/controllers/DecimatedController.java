@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.core.controllers;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import it.units.erallab.hmsrobots.core.objects.ControllableVoxel;
+import it.units.erallab.hmsrobots.core.snapshots.Snapshot;
+import it.units.erallab.hmsrobots.core.snapshots.Snapshottable;
+import it.units.erallab.hmsrobots.util.Grid;
+import it.units.erallab.hmsrobots.util.RandomStreams;
+import it.units.erallab.hmsrobots.util.Seedable;
+
+/**
+ * A controller which invokes the inner controller only at some of the steps, namely every {@code steps} steps and
+ * after at least {@code interval} seconds from the last invocation. In the other steps, each voxel is actuated again
+ * with its last applied force, while sensors keep being updated by the voxels themselves.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class DecimatedController<V extends ControllableVoxel> implements Controller<V>, Snapshottable, Seedable {
+
+  // tolerance on the time interval, for steps accumulated with rounding errors
+  private static final double TIME_EPSILON = 1e-9;
+
+  @JsonProperty
+  private final Controller<V> innerController;
+  @JsonProperty
+  private final int steps;
+  @JsonProperty
+  private final double interval;
+
+  private transient int skippedSteps;
+  private transient double lastControlT;
+
+  @JsonCreator
+  public DecimatedController(
+      @JsonProperty("innerController") Controller<V> innerController,
+      @JsonProperty("steps") int steps,
+      @JsonProperty("interval") double interval
+  ) {
+    if (steps < 1) {
+      throw new IllegalArgumentException(String.format("Steps must be >= 1: %d found", steps));
+    }
+    if (interval < 0d) {
+      throw new IllegalArgumentException(String.format("Interval must be >= 0: %f found", interval));
+    }
+    this.innerController = innerController;
+    this.steps = steps;
+    this.interval = interval;
+    reset();
+  }
+
+  public DecimatedController(Controller<V> innerController, int steps) {
+    this(innerController, steps, 0d);
+  }
+
+  public static <K extends ControllableVoxel> DecimatedController<K> atFrequency(Controller<K> innerController, double frequency) {
+    if (frequency <= 0d) {
+      throw new IllegalArgumentException(String.format("Frequency must be > 0: %f found", frequency));
+    }
+    return new DecimatedController<>(innerController, 1, 1d / frequency);
+  }
+
+  @Override
+  public DecimatedController<V> copy() {
+    return new DecimatedController<>(innerController.copy(), steps, interval);
+  }
+
+  public Controller<V> getInnerController() {
+    return innerController;
+  }
+
+  @Override
+  public void control(double t, Grid<? extends V> voxels) {
+    if ((skippedSteps + 1 >= steps) && (t - lastControlT >= interval - TIME_EPSILON)) {
+      innerController.control(t, voxels);
+      skippedSteps = 0;
+      lastControlT = t;
+    } else {
+      skippedSteps = skippedSteps + 1;
+      for (int x = 0; x < voxels.getW(); x++) {
+        for (int y = 0; y < voxels.getH(); y++) {
+          V voxel = voxels.get(x, y);
+          if (voxel != null) {
+            voxel.applyForce(voxel.getLastAppliedForce());
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void setRandomSeed(long seed) {
+    if (innerController instanceof Seedable) {
+      ((Seedable) innerController).setRandomSeed(RandomStreams.seed(seed, 0));
+    }
+  }
+
+  @Override
+  public void reset() {
+    innerController.reset();
+    skippedSteps = steps - 1;
+    lastControlT = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Returns the snapshot of the inner controller, or null if the inner controller is not {@link Snapshottable}.
+   */
+  @Override
+  public Snapshot getSnapshot() {
+    if (innerController instanceof Snapshottable) {
+      return ((Snapshottable) innerController).getSnapshot();
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return "DecimatedController{" +
+        "innerController=" + innerController +
+        ", steps=" + steps +
+        ", interval=" + interval +
+        '}';
+  }
+}
@@ -19,15 +19,28 @@ package it.units.erallab.hmsrobots.core.controllers;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import it.units.erallab.hmsrobots.core.objects.SensingVoxel;
+import it.units.erallab.hmsrobots.core.sensors.Sensor;
 import it.units.erallab.hmsrobots.util.Grid;
-import org.apache.commons.lang3.ArrayUtils;
+import it.units.erallab.hmsrobots.util.RandomStreams;
+import it.units.erallab.hmsrobots.util.Seedable;
 
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.stream.IntStream;
 
 /**
  * @author eric
  */
-public class DistributedSensing implements Controller<SensingVoxel> {
+public class DistributedSensing implements Controller<SensingVoxel>, Seedable {
+
+  /**
+   * How voxels are evaluated at each control step. With {@link #SEQUENTIAL}, voxels are evaluated one after the other
+   * in row-major order and read the signals already emitted in the same step by the preceding neighbors. With
+   * {@link #SYNCHRONOUS}, every voxel reads the signals emitted by its neighbors in the previous step, hence the
+   * outcome does not depend on the evaluation order; {@link #PARALLEL} does the same, but evaluates the voxels
+   * concurrently.
+   */
+  public enum Evaluation {SEQUENTIAL, SYNCHRONOUS, PARALLEL}
 
   private enum Dir {
 
@@ -56,6 +69,8 @@ public class DistributedSensing implements Controller<SensingVoxel> {
     }
   }
 
+  private static final Dir[] DIRS = Dir.values();
+
   private static class FunctionWrapper implements TimedRealFunction {
     @JsonProperty
     private final TimedRealFunction inner;
@@ -79,6 +94,11 @@ public class DistributedSensing implements Controller<SensingVoxel> {
     public int getOutputDimension() {
       return inner.getOutputDimension();
     }
+
+    @Override
+    public FunctionWrapper copy() {
+      return new FunctionWrapper(inner.copy());
+    }
   }
 
   @JsonProperty
@@ -89,8 +109,14 @@ public class DistributedSensing implements Controller<SensingVoxel> {
   private final Grid<Integer> nOfOutputGrid;
   @JsonProperty
   private final Grid<TimedRealFunction> functions;
+  @JsonProperty
+  private final Evaluation evaluation;
 
-  private final Grid<double[]> lastSignalsGrid;
+  private final int[][] neighbors; // cell index of the adjacent voxel in each direction, -1 if none
+  private final double[][] inputs;
+  private final double[][] outputs;
+  private double[] lastSignals; // signals * 4 values per cell
+  private double[] nextSignals;
 
   public static int nOfInputs(SensingVoxel voxel, int signals) {
     return signals * Dir.values().length + voxel.getSensors().stream().mapToInt(s -> s.getDomains().length).sum();
@@ -105,17 +131,32 @@ public class DistributedSensing implements Controller<SensingVoxel> {
       @JsonProperty("signals") int signals,
       @JsonProperty("nOfInputGrid") Grid<Integer> nOfInputGrid,
       @JsonProperty("nOfOutputGrid") Grid<Integer> nOfOutputGrid,
-      @JsonProperty("functions") Grid<TimedRealFunction> functions
+      @JsonProperty("functions") Grid<TimedRealFunction> functions,
+      @JsonProperty("evaluation") Evaluation evaluation
   ) {
     this.signals = signals;
     this.nOfInputGrid = nOfInputGrid;
     this.nOfOutputGrid = nOfOutputGrid;
     this.functions = functions;
-    lastSignalsGrid = Grid.create(functions, f -> new double[signals * Dir.values().length]);
+    this.evaluation = evaluation == null ? Evaluation.SEQUENTIAL : evaluation;
+    int nOfCells = functions.getW() * functions.getH();
+    neighbors = neighbors(functions.getW(), functions.getH());
+    inputs = new double[nOfCells][];
+    outputs = new double[nOfCells][];
+    lastSignals = new double[nOfCells * signals * Dir.values().length];
+    nextSignals = new double[lastSignals.length];
     reset();
   }
 
+  public DistributedSensing(int signals, Grid<Integer> nOfInputGrid, Grid<Integer> nOfOutputGrid, Grid<TimedRealFunction> functions) {
+    this(signals, nOfInputGrid, nOfOutputGrid, functions, Evaluation.SEQUENTIAL);
+  }
+
   public DistributedSensing(Grid<? extends SensingVoxel> voxels, int signals) {
+    this(voxels, signals, Evaluation.SEQUENTIAL);
+  }
+
+  public DistributedSensing(Grid<? extends SensingVoxel> voxels, int signals, Evaluation evaluation) {
     this(
         signals,
         Grid.create(voxels, v -> (v == null) ? 0 : nOfInputs(v, signals)),
@@ -128,21 +169,81 @@ public class DistributedSensing implements Controller<SensingVoxel> {
                 nOfInputs(voxels.get(x, y), signals),
                 nOfOutputs(voxels.get(x, y), signals))
             )
-        )
+        ),
+        evaluation
     );
   }
 
+  @Override
+  public DistributedSensing copy() {
+    return new DistributedSensing(signals, Grid.copy(nOfInputGrid), Grid.copy(nOfOutputGrid), Grid.copy(functions, TimedRealFunction::copy), evaluation);
+  }
+
   public Grid<TimedRealFunction> getFunctions() {
     return functions;
   }
 
+  // cell index of the adjacent cell in each direction, -1 if outside the grid
+  static int[][] neighbors(int w, int h) {
+    int[][] neighbors = new int[w * h][DIRS.length];
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        for (Dir dir : DIRS) {
+          int adjacentX = x + dir.dx;
+          int adjacentY = y + dir.dy;
+          boolean inside = adjacentX >= 0 && adjacentX < w && adjacentY >= 0 && adjacentY < h;
+          neighbors[y * w + x][dir.index] = inside ? (adjacentY * w + adjacentX) : -1;
+        }
+      }
+    }
+    return neighbors;
+  }
+
+  // fills the buffer, reallocated if needed, with the sensor readings of the voxel followed by the signals of the
+  // adjacent voxels directed to it
+  static double[] fillInputs(double[] buffer, SensingVoxel voxel, int signals, int[] neighbors, double[] readSignals) {
+    int nOfReadings = 0;
+    for (Sensor sensor : voxel.getSensors()) {
+      nOfReadings = nOfReadings + sensor.getDomains().length;
+    }
+    if (buffer == null || buffer.length != nOfReadings + signals * DIRS.length) {
+      buffer = new double[nOfReadings + signals * DIRS.length];
+    }
+    int i = voxel.fillSensorReadings(buffer, 0);
+    if (signals > 0) {
+      for (Dir dir : DIRS) {
+        int adjacent = neighbors[dir.index];
+        if (adjacent >= 0) {
+          System.arraycopy(readSignals, (adjacent * DIRS.length + Dir.adjacent(dir).index) * signals, buffer, i, signals);
+        } else {
+          Arrays.fill(buffer, i, i + signals, 0d);
+        }
+        i = i + signals;
+      }
+    }
+    return buffer;
+  }
+
+  public Evaluation getEvaluation() {
+    return evaluation;
+  }
+
+  /**
+   * Sets, for each {@link Seedable} function, a seed derived from the given one and from the position of the voxel.
+   */
   @Override
-  public void reset() {
-    for (int x = 0; x < lastSignalsGrid.getW(); x++) {
-      for (int y = 0; y < lastSignalsGrid.getH(); y++) {
-        lastSignalsGrid.set(x, y, new double[signals * Dir.values().length]);
+  public void setRandomSeed(long seed) {
+    for (Grid.Entry<TimedRealFunction> entry : functions) {
+      if (entry.getValue() instanceof Seedable) {
+        ((Seedable) entry.getValue()).setRandomSeed(RandomStreams.seed(seed, (long) entry.getY() * functions.getW() + entry.getX()));
       }
     }
+  }
+
+  @Override
+  public void reset() {
+    Arrays.fill(lastSignals, 0d);
+    Arrays.fill(nextSignals, 0d);
     functions.values().stream().filter(Objects::nonNull).forEach(f -> {
       if (f instanceof Resettable) {
         ((Resettable) f).reset();
@@ -152,20 +253,52 @@ public class DistributedSensing implements Controller<SensingVoxel> {
 
   @Override
   public void control(double t, Grid<? extends SensingVoxel> voxels) {
-    for (Grid.Entry<? extends SensingVoxel> entry : voxels) {
-      if (entry.getValue() == null) {
-        continue;
+    int w = voxels.getW();
+    int nOfCells = w * voxels.getH();
+    if (evaluation.equals(Evaluation.SEQUENTIAL)) {
+      for (int c = 0; c < nOfCells; c++) {
+        SensingVoxel voxel = voxels.get(c % w, c / w);
+        if (voxel != null) {
+          evaluate(t, c, voxel, lastSignals, lastSignals);
+          voxel.applyForce(outputs[c][0]);
+        }
       }
-      //get inputs
-      double[] signals = getLastSignals(entry.getX(), entry.getY());
-      double[] inputs = ArrayUtils.addAll(entry.getValue().getSensorReadings(), signals);
-      //compute outputs
-      TimedRealFunction function = functions.get(entry.getX(), entry.getY());
-      double[] outputs = function != null ? function.apply(t, inputs) : new double[1 + this.signals * Dir.values().length];
-      //apply outputs
-      entry.getValue().applyForce(outputs[0]);
-      System.arraycopy(outputs, 1, lastSignalsGrid.get(entry.getX(), entry.getY()), 0, this.signals * Dir.values().length);
+      return;
+    }
+    IntStream cells = IntStream.range(0, nOfCells);
+    if (evaluation.equals(Evaluation.PARALLEL)) {
+      cells = cells.parallel();
     }
+    cells.forEach(c -> {
+      SensingVoxel voxel = voxels.get(c % w, c / w);
+      if (voxel != null) {
+        evaluate(t, c, voxel, lastSignals, nextSignals);
+      }
+    });
+    // forces are applied to the physics bodies in a single thread
+    for (int c = 0; c < nOfCells; c++) {
+      SensingVoxel voxel = voxels.get(c % w, c / w);
+      if (voxel != null) {
+        voxel.applyForce(outputs[c][0]);
+      }
+    }
+    double[] swap = lastSignals;
+    lastSignals = nextSignals;
+    nextSignals = swap;
+  }
+
+  private void evaluate(double t, int c, SensingVoxel voxel, double[] readSignals, double[] writtenSignals) {
+    int nOfSignals = signals * DIRS.length;
+    //get inputs
+    inputs[c] = fillInputs(inputs[c], voxel, signals, neighbors[c], readSignals);
+    //compute outputs
+    TimedRealFunction function = functions.get(c % functions.getW(), c / functions.getW());
+    if (function != null) {
+      outputs[c] = function.apply(t, inputs[c]);
+    } else if (outputs[c] == null) {
+      outputs[c] = new double[1 + nOfSignals];
+    }
+    System.arraycopy(outputs[c], 1, writtenSignals, c * nOfSignals, nOfSignals);
   }
 
   public int nOfInputs(int x, int y) {
@@ -176,30 +309,12 @@ public class DistributedSensing implements Controller<SensingVoxel> {
     return nOfOutputGrid.get(x, y);
   }
 
-  private double[] getLastSignals(int x, int y) {
-    double[] values = new double[signals * Dir.values().length];
-    if (signals <= 0) {
-      return values;
-    }
-    int c = 0;
-    for (Dir dir : Dir.values()) {
-      int adjacentX = x + dir.dx;
-      int adjacentY = y + dir.dy;
-      double[] lastSignals = lastSignalsGrid.get(adjacentX, adjacentY);
-      if (lastSignals != null) {
-        int index = Dir.adjacent(dir).index;
-        System.arraycopy(lastSignals, index * signals, values, c, signals);
-      }
-      c = c + signals;
-    }
-    return values;
-  }
-
   @Override
   public String toString() {
     return "DistributedSensing{" +
         "signals=" + signals +
         ", functions=" + functions +
+        ", evaluation=" + evaluation +
         '}';
   }
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.core.controllers;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import it.units.erallab.hmsrobots.core.objects.SensingVoxel;
+import it.units.erallab.hmsrobots.util.Grid;
+import it.units.erallab.hmsrobots.util.RandomStreams;
+import it.units.erallab.hmsrobots.util.Seedable;
+
+/**
+ * A {@link DistributedSensing} where all the voxels share the same function, which is hence stored once. Voxels are
+ * evaluated synchronously, i.e., each voxel reads the signals emitted by its neighbors in the previous step (as with
+ * {@link DistributedSensing.Evaluation#SYNCHRONOUS}). If the function is a stateless {@link MultiLayerPerceptron}, all
+ * the voxels are evaluated at once with {@link MultiLayerPerceptron#applyBatch(double[][], int)}; if the function is
+ * {@link Resettable}, and hence possibly stateful, each voxel gets its own copy of it, which is seeded, if
+ * {@link Seedable}, as the function of the same voxel in {@link DistributedSensing}.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class HomogeneousDistributedSensing implements Controller<SensingVoxel>, Seedable {
+
+  @JsonProperty
+  private final int signals;
+  @JsonProperty
+  private final TimedRealFunction function;
+
+  private Long randomSeed;
+
+  private transient int w;
+  private transient int h;
+  private transient int[][] neighbors;
+  private transient double[][] inputs;
+  private transient double[][] outputs;
+  private transient int[] cells;
+  private transient TimedRealFunction[] functions;
+  private transient double[] lastSignals;
+  private transient double[] nextSignals;
+
+  @JsonCreator
+  public HomogeneousDistributedSensing(
+      @JsonProperty("signals") int signals,
+      @JsonProperty("function") TimedRealFunction function
+  ) {
+    this.signals = signals;
+    this.function = function;
+    reset();
+  }
+
+  public HomogeneousDistributedSensing(Grid<? extends SensingVoxel> voxels, int signals, TimedRealFunction function) {
+    this(signals, function);
+    for (Grid.Entry<? extends SensingVoxel> entry : voxels) {
+      if (entry.getValue() == null) {
+        continue;
+      }
+      if (DistributedSensing.nOfInputs(entry.getValue(), signals) != function.getInputDimension()) {
+        throw new IllegalArgumentException(String.format(
+            "Wrong input dimension of function for voxel at (%d,%d): %d expected, %d found",
+            entry.getX(),
+            entry.getY(),
+            DistributedSensing.nOfInputs(entry.getValue(), signals),
+            function.getInputDimension()
+        ));
+      }
+    }
+    if (DistributedSensing.nOfOutputs(null, signals) != function.getOutputDimension()) {
+      throw new IllegalArgumentException(String.format(
+          "Wrong output dimension of function: %d expected, %d found",
+          DistributedSensing.nOfOutputs(null, signals),
+          function.getOutputDimension()
+      ));
+    }
+  }
+
+  @Override
+  public HomogeneousDistributedSensing copy() {
+    HomogeneousDistributedSensing copy = new HomogeneousDistributedSensing(signals, function.copy());
+    copy.randomSeed = randomSeed;
+    return copy;
+  }
+
+  public TimedRealFunction getFunction() {
+    return function;
+  }
+
+  @Override
+  public void setRandomSeed(long seed) {
+    randomSeed = seed;
+    if (function instanceof Seedable) {
+      ((Seedable) function).setRandomSeed(RandomStreams.seed(seed, -1));
+    }
+  }
+
+  @Override
+  public void reset() {
+    // buffers and per-voxel copies of the function are rebuilt at the first control step
+    w = 0;
+    h = 0;
+    if (function instanceof Resettable) {
+      ((Resettable) function).reset();
+    }
+  }
+
+  private void prepare(Grid<? extends SensingVoxel> voxels) {
+    w = voxels.getW();
+    h = voxels.getH();
+    neighbors = DistributedSensing.neighbors(w, h);
+    int nOfVoxels = (int) voxels.count(v -> v != null);
+    inputs = new double[nOfVoxels][];
+    outputs = new double[nOfVoxels][];
+    cells = new int[nOfVoxels];
+    functions = null;
+    if (function instanceof Resettable) {
+      functions = new TimedRealFunction[nOfVoxels];
+    }
+    int v = 0;
+    for (int c = 0; c < w * h; c++) {
+      if (voxels.get(c % w, c / w) != null) {
+        cells[v] = c;
+        if (functions != null) {
+          functions[v] = function.copy();
+          if (randomSeed != null && functions[v] instanceof Seedable) {
+            ((Seedable) functions[v]).setRandomSeed(RandomStreams.seed(randomSeed, c));
+            ((Resettable) functions[v]).reset();
+          }
+        }
+        v = v + 1;
+      }
+    }
+    lastSignals = new double[w * h * (DistributedSensing.nOfOutputs(null, signals) - 1)];
+    nextSignals = new double[lastSignals.length];
+  }
+
+  @Override
+  public void control(double t, Grid<? extends SensingVoxel> voxels) {
+    if (w != voxels.getW() || h != voxels.getH()) {
+      prepare(voxels);
+    }
+    //get inputs
+    for (int v = 0; v < cells.length; v++) {
+      int c = cells[v];
+      inputs[v] = DistributedSensing.fillInputs(inputs[v], voxels.get(c % w, c / w), signals, neighbors[c], lastSignals);
+    }
+    //compute outputs
+    if (functions != null) {
+      for (int v = 0; v < cells.length; v++) {
+        outputs[v] = functions[v].apply(t, inputs[v]);
+      }
+    } else if (function instanceof MultiLayerPerceptron) {
+      double[][] batchOutputs = ((MultiLayerPerceptron) function).applyBatch(inputs, cells.length);
+      System.arraycopy(batchOutputs, 0, outputs, 0, cells.length);
+    } else {
+      for (int v = 0; v < cells.length; v++) {
+        outputs[v] = function.apply(t, inputs[v]);
+      }
+    }
+    //apply outputs
+    int nOfSignals = DistributedSensing.nOfOutputs(null, signals) - 1;
+    for (int v = 0; v < cells.length; v++) {
+      int c = cells[v];
+      voxels.get(c % w, c / w).applyForce(outputs[v][0]);
+      System.arraycopy(outputs[v], 1, nextSignals, c * nOfSignals, nOfSignals);
+    }
+    double[] swap = lastSignals;
+    lastSignals = nextSignals;
+    nextSignals = swap;
+  }
+
+  @Override
+  public String toString() {
+    return "HomogeneousDistributedSensing{" +
+        "signals=" + signals +
+        ", function=" + function +
+        '}';
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.core.controllers;
+
+import java.util.logging.Logger;
+
+/**
+ * Computes the weighted sums of the neurons of a {@link MultiLayerPerceptron}. {@link #SCALAR} sums the terms in
+ * order and gives the same results of the original implementation; {@link #UNROLLED} splits the sum over four
+ * independent accumulators, which lets the CPU overlap the additions on wide layers, at the cost of results which may
+ * differ in the last bits. The kernel is selected at runtime through the {@value #PROPERTY} system property and
+ * defaults to {@link #SCALAR}.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public enum MLPKernel {
+
+  SCALAR {
+    @Override
+    public double weightedSum(double[] weights, double[] inputs) {
+      double sum = weights[0];
+      for (int k = 0; k < inputs.length; k++) {
+        sum = sum + inputs[k] * weights[k + 1];
+      }
+      return sum;
+    }
+  },
+  UNROLLED {
+    @Override
+    public double weightedSum(double[] weights, double[] inputs) {
+      double sum0 = 0d;
+      double sum1 = 0d;
+      double sum2 = 0d;
+      double sum3 = 0d;
+      int n = inputs.length;
+      int k = 0;
+      for (; k < n - 3; k = k + 4) {
+        sum0 = sum0 + inputs[k] * weights[k + 1];
+        sum1 = sum1 + inputs[k + 1] * weights[k + 2];
+        sum2 = sum2 + inputs[k + 2] * weights[k + 3];
+        sum3 = sum3 + inputs[k + 3] * weights[k + 4];
+      }
+      for (; k < n; k++) {
+        sum0 = sum0 + inputs[k] * weights[k + 1];
+      }
+      return weights[0] + ((sum0 + sum1) + (sum2 + sum3));
+    }
+  };
+
+  public static final String PROPERTY = "hmsrobots.mlp.kernel";
+
+  private static final Logger L = Logger.getLogger(MLPKernel.class.getName());
+  private static final MLPKernel DEFAULT = fromProperty();
+
+  /**
+   * Returns the bias {@code weights[0]} plus the sum of the products of {@code inputs[k]} and {@code weights[k+1]}.
+   */
+  public abstract double weightedSum(double[] weights, double[] inputs);
+
+  public static MLPKernel get() {
+    return DEFAULT;
+  }
+
+  private static MLPKernel fromProperty() {
+    String name = System.getProperty(PROPERTY);
+    if (name == null) {
+      return SCALAR;
+    }
+    try {
+      return valueOf(name.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      L.warning(String.format("Unknown MLP kernel %s: using %s", name, SCALAR));
+      return SCALAR;
+    }
+  }
+
+}
@@ -27,6 +27,7 @@ import it.units.erallab.hmsrobots.util.Parametrized;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -35,24 +36,38 @@ import java.util.stream.Collectors;
  */
 public class MultiLayerPerceptron implements Serializable, RealFunction, Parametrized, Snapshottable {
 
+  /**
+   * The activation functions of the neurons. {@link #TANH_FAST} and {@link #SIGMOID_FAST} approximate {@link #TANH}
+   * and {@link #SIGMOID} with a rational function, with an absolute error lower than 1e-4 and 5e-5, respectively,
+   * and are much cheaper to compute.
+   */
   public enum ActivationFunction implements Function<Double, Double> {
     RELU(x -> (x < 0) ? 0d : x, Domain.of(0d, Double.POSITIVE_INFINITY)),
     SIGMOID(x -> 1d / (1d + Math.exp(-x)), Domain.of(0d, 1d)),
     SIN(Math::sin, Domain.of(-1d, 1d)),
     TANH(Math::tanh, Domain.of(-1d, 1d)),
     SIGN(Math::signum, Domain.of(-1d, 1d)),
-    IDENTITY(x -> x, Domain.of(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+    IDENTITY(x -> x, Domain.of(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY)),
+    TANH_FAST(ActivationFunction::fastTanh, Domain.of(-1d, 1d)),
+    SIGMOID_FAST(x -> 0.5d + 0.5d * fastTanh(0.5d * x), Domain.of(0d, 1d));
 
-    private final Function<Double, Double> f;
+    private final DoubleUnaryOperator f;
     private final Domain domain;
 
-    ActivationFunction(Function<Double, Double> f, Domain domain) {
+    ActivationFunction(DoubleUnaryOperator f, Domain domain) {
       this.f = f;
       this.domain = domain;
     }
 
+    // Lambert's continued fraction for tanh truncated at the 7th term, clipped to [-1,1]
+    private static double fastTanh(double x) {
+      double x2 = x * x;
+      double v = x * (135135d + x2 * (17325d + x2 * (378d + x2))) / (135135d + x2 * (62370d + x2 * (3150d + x2 * 28d)));
+      return Math.max(-1d, Math.min(1d, v));
+    }
+
     public Function<Double, Double> getF() {
-      return f;
+      return f::applyAsDouble;
     }
 
     public Domain getDomain() {
@@ -60,7 +75,21 @@ public class MultiLayerPerceptron implements Serializable, RealFunction, Paramet
     }
 
     public Double apply(Double x) {
-      return f.apply(x);
+      return f.applyAsDouble(x);
+    }
+
+    public double applyAsDouble(double x) {
+      return f.applyAsDouble(x);
+    }
+
+    /**
+     * Applies this function to the first {@code in.length} values of {@code in} and stores the results in {@code out},
+     * which may be the same array.
+     */
+    public void apply(double[] in, double[] out) {
+      for (int i = 0; i < in.length; i++) {
+        out[i] = f.applyAsDouble(in[i]);
+      }
     }
   }
 
@@ -72,6 +101,7 @@ public class MultiLayerPerceptron implements Serializable, RealFunction, Paramet
   protected final int[] neurons;
 
   protected final double[][] activationValues;
+  private transient double[][][] batchActivationValues;
 
   @JsonCreator
   public MultiLayerPerceptron(
@@ -110,6 +140,22 @@ public class MultiLayerPerceptron implements Serializable, RealFunction, Paramet
     );
   }
 
+  @Override
+  public MultiLayerPerceptron copy() {
+    return new MultiLayerPerceptron(activationFunction, copyOf(weights), Arrays.copyOf(neurons, neurons.length));
+  }
+
+  protected static double[][][] copyOf(double[][][] weights) {
+    double[][][] copy = new double[weights.length][][];
+    for (int i = 0; i < weights.length; i++) {
+      copy[i] = new double[weights[i].length][];
+      for (int j = 0; j < weights[i].length; j++) {
+        copy[i][j] = Arrays.copyOf(weights[i][j], weights[i][j].length);
+      }
+    }
+    return copy;
+  }
+
   public static int[] countNeurons(int nOfInput, int[] innerNeurons, int nOfOutput) {
     final int[] neurons;
     neurons = new int[2 + innerNeurons.length];
@@ -165,20 +211,52 @@ public class MultiLayerPerceptron implements Serializable, RealFunction, Paramet
     if (input.length != neurons[0]) {
       throw new IllegalArgumentException(String.format("Expected input length is %d: found %d", neurons[0], input.length));
     }
-    activationValues[0] = Arrays.stream(input).map(activationFunction.f::apply).toArray();
+    activationValues[0] = new double[neurons[0]];
+    activationFunction.apply(input, activationValues[0]);
+    MLPKernel kernel = MLPKernel.get();
     for (int i = 1; i < neurons.length; i++) {
       activationValues[i] = new double[neurons[i]];
       for (int j = 0; j < neurons[i]; j++) {
-        double sum = weights[i - 1][j][0]; //set the bias
-        for (int k = 1; k < neurons[i - 1] + 1; k++) {
-          sum = sum + activationValues[i - 1][k - 1] * weights[i - 1][j][k];
-        }
-        activationValues[i][j] = activationFunction.apply(sum);
+        activationValues[i][j] = kernel.weightedSum(weights[i - 1][j], activationValues[i - 1]);
       }
+      activationFunction.apply(activationValues[i], activationValues[i]);
     }
     return activationValues[neurons.length - 1];
   }
 
+  /**
+   * Applies this network to the first {@code n} rows of {@code inputs}, one input per row, layer by layer: each neuron
+   * is computed on all the rows before moving to the next one, so that its weights are read from the cache. Rows of
+   * the returned matrix are the outputs; the matrix is owned by this network and is overwritten by the next call.
+   * The activation values of the network are not updated.
+   */
+  public double[][] applyBatch(double[][] inputs, int n) {
+    if (batchActivationValues == null || batchActivationValues[0].length < n) {
+      batchActivationValues = new double[neurons.length][n][];
+      for (int i = 0; i < neurons.length; i++) {
+        for (int v = 0; v < n; v++) {
+          batchActivationValues[i][v] = new double[neurons[i]];
+        }
+      }
+    }
+    for (int v = 0; v < n; v++) {
+      if (inputs[v].length != neurons[0]) {
+        throw new IllegalArgumentException(String.format("Expected input length is %d: found %d", neurons[0], inputs[v].length));
+      }
+      activationFunction.apply(inputs[v], batchActivationValues[0][v]);
+    }
+    MLPKernel kernel = MLPKernel.get();
+    for (int i = 1; i < neurons.length; i++) {
+      for (int j = 0; j < neurons[i]; j++) {
+        double[] neuronWeights = weights[i - 1][j];
+        for (int v = 0; v < n; v++) {
+          batchActivationValues[i][v][j] = activationFunction.applyAsDouble(kernel.weightedSum(neuronWeights, batchActivationValues[i - 1][v]));
+        }
+      }
+    }
+    return batchActivationValues[neurons.length - 1];
+  }
+
   @Override
   public int getInputDimension() {
     return neurons[0];
@@ -19,6 +19,7 @@ package it.units.erallab.hmsrobots.core.controllers;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import it.units.erallab.hmsrobots.util.Grid;
+import it.units.erallab.hmsrobots.util.SerializableDoubleUnaryOperator;
 import it.units.erallab.hmsrobots.util.SerializableFunction;
 
 import java.util.Objects;
@@ -35,6 +36,8 @@ public class PhaseSin extends TimeFunctions {
   @JsonProperty
   private final Grid<Double> phases;
 
+  private transient double[] cellPhases;
+
   @JsonCreator
   public PhaseSin(
       @JsonProperty("frequency") double frequency,
@@ -47,16 +50,42 @@ public class PhaseSin extends TimeFunctions {
     this.amplitude = amplitude;
   }
 
+  @Override
+  public PhaseSin copy() {
+    return new PhaseSin(frequency, amplitude, Grid.copy(phases));
+  }
+
   private static Grid<SerializableFunction<Double, Double>> getFunctions(final double frequency, final double amplitude, final Grid<Double> phases) {
     Grid<SerializableFunction<Double, Double>> functions = Grid.create(phases);
     for (Grid.Entry<Double> entry : phases) {
       if (entry.getValue() != null) {
-        functions.set(entry.getX(), entry.getY(), t -> Math.sin(2d * Math.PI * frequency * t + entry.getValue()) * amplitude);
+        double phase = entry.getValue();
+        functions.set(
+            entry.getX(),
+            entry.getY(),
+            (SerializableDoubleUnaryOperator) t -> Math.sin(2d * Math.PI * frequency * t + phase) * amplitude
+        );
       }
     }
     return functions;
   }
 
+  @Override
+  protected void prepare(int[] xs, int[] ys) {
+    cellPhases = new double[xs.length];
+    for (int i = 0; i < xs.length; i++) {
+      cellPhases[i] = phases.get(xs[i], ys[i]);
+    }
+  }
+
+  @Override
+  protected void compute(double t, double[] outputs) {
+    double angle = 2d * Math.PI * frequency * t;
+    for (int i = 0; i < outputs.length; i++) {
+      outputs[i] = Math.sin(angle + cellPhases[i]) * amplitude;
+    }
+  }
+
   @Override
   public int hashCode() {
     int hash = 7;
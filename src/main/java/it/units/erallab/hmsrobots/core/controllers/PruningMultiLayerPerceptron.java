@@ -18,12 +18,14 @@
 package it.units.erallab.hmsrobots.core.controllers;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import org.apache.commons.math3.util.Pair;
+import it.units.erallab.hmsrobots.util.RandomStreams;
+import it.units.erallab.hmsrobots.util.Seedable;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
 
-public class PruningMultiLayerPerceptron extends MultiLayerPerceptron implements TimedRealFunction, Resettable {
+public class PruningMultiLayerPerceptron extends MultiLayerPerceptron implements TimedRealFunction, Resettable, Seedable {
 
   public enum Context {NETWORK, LAYER, NEURON}
 
@@ -46,12 +48,19 @@ public class PruningMultiLayerPerceptron extends MultiLayerPerceptron implements
 
   private boolean pruned;
   private long counter;
+  private Long randomSeed;
 
   private double[][][] prunedWeights;
   private double[][][] means;
   private double[][][] absMeans;
   private double[][][] meanDiffSquareSums; //https://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Weighted_incremental_algorithm
 
+  // compressed sparse rows of the pruned weights, one per layer, built once at pruning time
+  private double[][] biases;
+  private int[][] rowStarts;
+  private int[][] columns;
+  private double[][] values;
+
   public PruningMultiLayerPerceptron(
       @JsonProperty("activationFunction") ActivationFunction activationFunction,
       @JsonProperty("weights") double[][][] weights,
@@ -87,12 +96,24 @@ public class PruningMultiLayerPerceptron extends MultiLayerPerceptron implements
     reset();
   }
 
+  @Override
+  public PruningMultiLayerPerceptron copy() {
+    PruningMultiLayerPerceptron copy = new PruningMultiLayerPerceptron(activationFunction, copyOf(weights), Arrays.copyOf(neurons, neurons.length), pruningTime, context, criterion, rate);
+    copy.randomSeed = randomSeed;
+    return copy;
+  }
+
   @Override
   public void setParams(double[] params) {
     super.setParams(params);
     reset();
   }
 
+  @Override
+  public void setRandomSeed(long seed) {
+    randomSeed = seed;
+  }
+
   @Override
   public void reset() {
     if (rate < 0 || rate > 1) {
@@ -100,6 +121,10 @@ public class PruningMultiLayerPerceptron extends MultiLayerPerceptron implements
     }
     pruned = false;
     counter = 0;
+    biases = null;
+    rowStarts = null;
+    columns = null;
+    values = null;
     means = new double[weights.length][][];
     absMeans = new double[weights.length][][];
     meanDiffSquareSums = new double[weights.length][][];
@@ -125,45 +150,63 @@ public class PruningMultiLayerPerceptron extends MultiLayerPerceptron implements
 
   private void prune() {
     pruned = true;
-    List<Pair<int[], Double>> pairs = new ArrayList<>();
-    Random random = new Random((long) (10000 * weights[0][0][0])); // TODO to improve, should be passed to constructor
+    int nOfWeights = countWeights(neurons);
+    int[][] indexes = new int[nOfWeights][];
+    double[] scores = new double[nOfWeights];
+    // if not set, the seed is derived from the weights
+    SplittableRandom random = RandomStreams.stream(randomSeed != null ? randomSeed : (long) (10000 * weights[0][0][0]));
+    int c = 0;
     for (int i = 1; i < neurons.length; i++) {
       for (int j = 0; j < neurons[i]; j++) {
         for (int k = 0; k < neurons[i - 1] + 1; k++) {
-          pairs.add(Pair.create(
-              new int[]{i, j, k},
-              switch (criterion) {
-                case WEIGHT -> Math.abs(prunedWeights[i - 1][j][k]);
-                case SIGNAL_MEAN -> means[i - 1][j][k];
-                case ABS_SIGNAL_MEAN -> absMeans[i - 1][j][k];
-                case SIGNAL_VARIANCE -> meanDiffSquareSums[i - 1][j][k];
-                case RANDOM -> random.nextDouble();
-              }
-          ));
+          indexes[c] = new int[]{i, j, k};
+          scores[c] = switch (criterion) {
+            case WEIGHT -> Math.abs(prunedWeights[i - 1][j][k]);
+            case SIGNAL_MEAN -> means[i - 1][j][k];
+            case ABS_SIGNAL_MEAN -> absMeans[i - 1][j][k];
+            case SIGNAL_VARIANCE -> meanDiffSquareSums[i - 1][j][k];
+            case RANDOM -> random.nextDouble();
+          };
+          c = c + 1;
         }
       }
     }
+    // weights are flattened layer by layer and neuron by neuron, hence each context is a contiguous range
     if (context.equals(Context.NETWORK)) {
-      prune(pairs);
+      prune(indexes, scores, 0, nOfWeights);
     } else if (context.equals(Context.LAYER)) {
+      int from = 0;
       for (int i = 1; i < neurons.length; i++) {
-        final int localI = i;
-        prune(pairs.stream().filter(p -> p.getKey()[0] == localI).collect(Collectors.toList()));
+        int to = from + neurons[i] * (neurons[i - 1] + 1);
+        prune(indexes, scores, from, to);
+        from = to;
       }
     } else if (context.equals(Context.NEURON)) {
+      int from = 0;
       for (int i = 1; i < neurons.length; i++) {
         for (int j = 0; j < neurons[i]; j++) {
-          final int localI = i;
-          final int localJ = j;
-          prune(pairs.stream().filter(p -> p.getKey()[0] == localI && p.getKey()[1] == localJ).collect(Collectors.toList()));
+          int to = from + neurons[i - 1] + 1;
+          prune(indexes, scores, from, to);
+          from = to;
         }
       }
     }
+    compress();
+    // statistics are no longer needed
+    means = null;
+    absMeans = null;
+    meanDiffSquareSums = null;
   }
 
-  private void prune(List<Pair<int[], Double>> localPairs) {
-    localPairs.sort(Comparator.comparing(Pair::getValue));
-    localPairs.subList(0, (int) Math.round(localPairs.size() * rate)).forEach(p -> prune(p.getKey()));
+  private void prune(int[][] indexes, double[] scores, int from, int to) {
+    Integer[] order = new Integer[to - from];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = from + i;
+    }
+    Arrays.sort(order, Comparator.comparingDouble(i -> scores[i])); // stable, as ties are resolved by position
+    for (int i = 0; i < (int) Math.round(order.length * rate); i++) {
+      prune(indexes[order[i]]);
+    }
   }
 
   private void prune(int[] is) {
@@ -176,15 +219,66 @@ public class PruningMultiLayerPerceptron extends MultiLayerPerceptron implements
     }
   }
 
+  private void compress() {
+    biases = new double[neurons.length - 1][];
+    rowStarts = new int[neurons.length - 1][];
+    columns = new int[neurons.length - 1][];
+    values = new double[neurons.length - 1][];
+    for (int i = 1; i < neurons.length; i++) {
+      int nOfNonZeros = 0;
+      for (int j = 0; j < neurons[i]; j++) {
+        for (int k = 1; k < neurons[i - 1] + 1; k++) {
+          if (prunedWeights[i - 1][j][k] != 0d) {
+            nOfNonZeros = nOfNonZeros + 1;
+          }
+        }
+      }
+      biases[i - 1] = new double[neurons[i]];
+      rowStarts[i - 1] = new int[neurons[i] + 1];
+      columns[i - 1] = new int[nOfNonZeros];
+      values[i - 1] = new double[nOfNonZeros];
+      int c = 0;
+      for (int j = 0; j < neurons[i]; j++) {
+        biases[i - 1][j] = prunedWeights[i - 1][j][0];
+        rowStarts[i - 1][j] = c;
+        for (int k = 1; k < neurons[i - 1] + 1; k++) {
+          if (prunedWeights[i - 1][j][k] != 0d) {
+            columns[i - 1][c] = k - 1;
+            values[i - 1][c] = prunedWeights[i - 1][j][k];
+            c = c + 1;
+          }
+        }
+      }
+      rowStarts[i - 1][neurons[i]] = c;
+    }
+  }
+
   @Override
   public double[] apply(double t, double[] input) {
-    if (t >= pruningTime) {
+    if (!pruned && t >= pruningTime) {
       prune();
     }
     if (input.length != neurons[0]) {
       throw new IllegalArgumentException(String.format("Expected input length is %d: found %d", neurons[0], input.length));
     }
-    activationValues[0] = Arrays.stream(input).map(activationFunction::apply).toArray();
+    activationValues[0] = new double[neurons[0]];
+    activationFunction.apply(input, activationValues[0]);
+    if (pruned) {
+      for (int i = 1; i < neurons.length; i++) {
+        activationValues[i] = new double[neurons[i]];
+        double[] layerValues = values[i - 1];
+        int[] layerColumns = columns[i - 1];
+        int[] layerRowStarts = rowStarts[i - 1];
+        for (int j = 0; j < neurons[i]; j++) {
+          double sum = biases[i - 1][j];
+          for (int c = layerRowStarts[j]; c < layerRowStarts[j + 1]; c++) {
+            sum = sum + activationValues[i - 1][layerColumns[c]] * layerValues[c];
+          }
+          activationValues[i][j] = activationFunction.applyAsDouble(sum);
+        }
+      }
+      return activationValues[neurons.length - 1];
+    }
     for (int i = 1; i < neurons.length; i++) {
       activationValues[i] = new double[neurons[i]];
       for (int j = 0; j < neurons[i]; j++) {
@@ -197,7 +291,7 @@ public class PruningMultiLayerPerceptron extends MultiLayerPerceptron implements
           absMeans[i - 1][j][k] = absMeans[i - 1][j][k] + (Math.abs(signal) - absMeans[i - 1][j][k]) / ((double) counter + 1d);
           meanDiffSquareSums[i - 1][j][k] = meanDiffSquareSums[i - 1][j][k] + delta * (signal - means[i - 1][j][k]);
         }
-        activationValues[i][j] = activationFunction.apply(sum);
+        activationValues[i][j] = activationFunction.applyAsDouble(sum);
       }
     }
     counter = counter + 1;
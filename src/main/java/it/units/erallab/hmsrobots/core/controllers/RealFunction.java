@@ -1,6 +1,7 @@
 package it.units.erallab.hmsrobots.core.controllers;
 
 import it.units.erallab.hmsrobots.util.SerializableFunction;
+import it.units.erallab.hmsrobots.util.SerializationUtils;
 
 /**
  * @author eric on 2021/03/09 for 2dhmsr
@@ -8,6 +9,11 @@ import it.units.erallab.hmsrobots.util.SerializableFunction;
 public interface RealFunction extends TimedRealFunction {
   double[] apply(double[] input);
 
+  @Override
+  default RealFunction copy() {
+    return SerializationUtils.clone(this);
+  }
+
   @Override
   default double[] apply(double t, double[] input) {
     return apply(input);
@@ -29,6 +35,11 @@ public interface RealFunction extends TimedRealFunction {
       public int getOutputDimension() {
         return outputDimension;
       }
+
+      @Override
+      public RealFunction copy() {
+        return this;
+      }
     };
   }
 
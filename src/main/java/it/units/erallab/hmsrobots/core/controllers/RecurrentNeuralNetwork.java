@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.core.controllers;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import it.units.erallab.hmsrobots.core.snapshots.MLPState;
+import it.units.erallab.hmsrobots.core.snapshots.Snapshot;
+import it.units.erallab.hmsrobots.core.snapshots.Snapshottable;
+import it.units.erallab.hmsrobots.util.Domain;
+import it.units.erallab.hmsrobots.util.Parametrized;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * A recurrent network with one hidden layer, whose values (the state) are fed back as inputs at the next invocation,
+ * and a {@code tanh} output layer. With {@link Cell#ELMAN}, the new state is the {@code tanh} of the weighted sum of
+ * inputs and state. With {@link Cell#GRU}, the state is updated through the update and reset gates of a gated recurrent
+ * unit. Weights are stored as in {@link MultiLayerPerceptron}, with the bias first: {@code weights[g][j]} are the
+ * weights of the {@code j}-th hidden neuron for the {@code g}-th gate, applied to the inputs followed by the state, and
+ * the last element of {@code weights} holds the weights of the output neurons, applied to the state.
+ * <p>
+ * All the buffers are allocated at construction: the array returned by {@link #apply(double, double[])} is owned by
+ * the network and is overwritten by the next invocation.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class RecurrentNeuralNetwork implements Serializable, TimedRealFunction, Parametrized, Resettable, Snapshottable {
+
+  public enum Cell {
+    ELMAN(1), GRU(3);
+
+    private final int nOfGates;
+
+    Cell(int nOfGates) {
+      this.nOfGates = nOfGates;
+    }
+
+    public int getNOfGates() {
+      return nOfGates;
+    }
+  }
+
+  private static final int UPDATE_GATE = 0;
+  private static final int RESET_GATE = 1;
+  private static final int CANDIDATE_GATE = 2;
+
+  @JsonProperty
+  private final Cell cell;
+  @JsonProperty
+  private final double[][][] weights;
+  @JsonProperty
+  private final int[] neurons; // inputs, state, outputs
+
+  private final double[] inputs; // inputs followed by state
+  private final double[] gatedInputs; // inputs followed by state multiplied by the reset gate
+  private final double[] updateGate;
+  private double[] state;
+  private double[] nextState;
+  private final double[] outputs;
+
+  @JsonCreator
+  public RecurrentNeuralNetwork(
+      @JsonProperty("cell") Cell cell,
+      @JsonProperty("weights") double[][][] weights,
+      @JsonProperty("neurons") int[] neurons
+  ) {
+    if (neurons.length != 3) {
+      throw new IllegalArgumentException(String.format("Wrong number of layers: 3 expected, %d found", neurons.length));
+    }
+    if (flat(weights).length != countWeights(cell, neurons[0], neurons[1], neurons[2])) {
+      throw new IllegalArgumentException(String.format(
+          "Wrong number of weights: %d expected, %d found",
+          countWeights(cell, neurons[0], neurons[1], neurons[2]),
+          flat(weights).length
+      ));
+    }
+    this.cell = cell;
+    this.weights = weights;
+    this.neurons = neurons;
+    inputs = new double[neurons[0] + neurons[1]];
+    gatedInputs = new double[neurons[0] + neurons[1]];
+    updateGate = new double[neurons[1]];
+    state = new double[neurons[1]];
+    nextState = new double[neurons[1]];
+    outputs = new double[neurons[2]];
+  }
+
+  public RecurrentNeuralNetwork(Cell cell, int nOfInput, int nOfState, int nOfOutput, double[] weights) {
+    this(cell, unflat(weights, cell, nOfInput, nOfState, nOfOutput), new int[]{nOfInput, nOfState, nOfOutput});
+  }
+
+  public RecurrentNeuralNetwork(Cell cell, int nOfInput, int nOfState, int nOfOutput) {
+    this(cell, nOfInput, nOfState, nOfOutput, new double[countWeights(cell, nOfInput, nOfState, nOfOutput)]);
+  }
+
+  @Override
+  public RecurrentNeuralNetwork copy() {
+    return new RecurrentNeuralNetwork(cell, MultiLayerPerceptron.copyOf(weights), Arrays.copyOf(neurons, neurons.length));
+  }
+
+  public static int countWeights(Cell cell, int nOfInput, int nOfState, int nOfOutput) {
+    return cell.getNOfGates() * nOfState * (nOfInput + nOfState + 1) + nOfOutput * (nOfState + 1);
+  }
+
+  public static double[][][] unflat(double[] flatWeights, Cell cell, int nOfInput, int nOfState, int nOfOutput) {
+    if (flatWeights.length != countWeights(cell, nOfInput, nOfState, nOfOutput)) {
+      throw new IllegalArgumentException(String.format(
+          "Wrong number of weights: %d expected, %d found",
+          countWeights(cell, nOfInput, nOfState, nOfOutput),
+          flatWeights.length
+      ));
+    }
+    double[][][] unflatWeights = new double[cell.getNOfGates() + 1][][];
+    int c = 0;
+    for (int g = 0; g < unflatWeights.length; g++) {
+      boolean output = g == cell.getNOfGates();
+      unflatWeights[g] = new double[output ? nOfOutput : nOfState][output ? (nOfState + 1) : (nOfInput + nOfState + 1)];
+      for (double[] neuronWeights : unflatWeights[g]) {
+        System.arraycopy(flatWeights, c, neuronWeights, 0, neuronWeights.length);
+        c = c + neuronWeights.length;
+      }
+    }
+    return unflatWeights;
+  }
+
+  public static double[] flat(double[][][] unflatWeights) {
+    return Arrays.stream(unflatWeights).flatMap(Arrays::stream).flatMapToDouble(Arrays::stream).toArray();
+  }
+
+  private static double sigmoid(double x) {
+    return 1d / (1d + Math.exp(-x));
+  }
+
+  @Override
+  public double[] apply(double t, double[] input) {
+    if (input.length != neurons[0]) {
+      throw new IllegalArgumentException(String.format("Expected input length is %d: found %d", neurons[0], input.length));
+    }
+    int nOfInput = neurons[0];
+    int nOfState = neurons[1];
+    System.arraycopy(input, 0, inputs, 0, nOfInput);
+    System.arraycopy(state, 0, inputs, nOfInput, nOfState);
+    MLPKernel kernel = MLPKernel.get();
+    if (cell.equals(Cell.ELMAN)) {
+      for (int j = 0; j < nOfState; j++) {
+        nextState[j] = Math.tanh(kernel.weightedSum(weights[0][j], inputs));
+      }
+    } else {
+      System.arraycopy(input, 0, gatedInputs, 0, nOfInput);
+      for (int j = 0; j < nOfState; j++) {
+        updateGate[j] = sigmoid(kernel.weightedSum(weights[UPDATE_GATE][j], inputs));
+        gatedInputs[nOfInput + j] = sigmoid(kernel.weightedSum(weights[RESET_GATE][j], inputs)) * state[j];
+      }
+      for (int j = 0; j < nOfState; j++) {
+        double candidate = Math.tanh(kernel.weightedSum(weights[CANDIDATE_GATE][j], gatedInputs));
+        nextState[j] = (1d - updateGate[j]) * state[j] + updateGate[j] * candidate;
+      }
+    }
+    double[] swap = state;
+    state = nextState;
+    nextState = swap;
+    double[][] outputWeights = weights[cell.getNOfGates()];
+    for (int o = 0; o < outputs.length; o++) {
+      outputs[o] = Math.tanh(kernel.weightedSum(outputWeights[o], state));
+    }
+    return outputs;
+  }
+
+  @Override
+  public void reset() {
+    Arrays.fill(state, 0d);
+    Arrays.fill(outputs, 0d);
+  }
+
+  @Override
+  public int getInputDimension() {
+    return neurons[0];
+  }
+
+  @Override
+  public int getOutputDimension() {
+    return neurons[2];
+  }
+
+  public Cell getCell() {
+    return cell;
+  }
+
+  public double[][][] getWeights() {
+    return weights;
+  }
+
+  public int[] getNeurons() {
+    return neurons;
+  }
+
+  public double[] getState() {
+    return state;
+  }
+
+  @Override
+  public double[] getParams() {
+    return flat(weights);
+  }
+
+  @Override
+  public void setParams(double[] params) {
+    double[][][] newWeights = unflat(params, cell, neurons[0], neurons[1], neurons[2]);
+    for (int g = 0; g < newWeights.length; g++) {
+      for (int j = 0; j < newWeights[g].length; j++) {
+        System.arraycopy(newWeights[g][j], 0, weights[g][j], 0, newWeights[g][j].length);
+      }
+    }
+  }
+
+  @Override
+  public Snapshot getSnapshot() {
+    return new Snapshot(
+        new MLPState(
+            new double[][]{Arrays.copyOf(inputs, neurons[0]), state, outputs},
+            weights,
+            Domain.of(-1d, 1d)
+        ),
+        getClass()
+    );
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 5;
+    hash = 67 * hash + cell.hashCode();
+    hash = 67 * hash + Arrays.deepHashCode(weights);
+    hash = 67 * hash + Arrays.hashCode(neurons);
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    final RecurrentNeuralNetwork other = (RecurrentNeuralNetwork) obj;
+    if (cell != other.cell) {
+      return false;
+    }
+    if (!Arrays.deepEquals(weights, other.weights)) {
+      return false;
+    }
+    return Arrays.equals(neurons, other.neurons);
+  }
+
+  @Override
+  public String toString() {
+    return "RNN." + cell.toString().toLowerCase() + "[" +
+        Arrays.stream(neurons).mapToObj(Integer::toString).collect(Collectors.joining(","))
+        + "]";
+  }
+}
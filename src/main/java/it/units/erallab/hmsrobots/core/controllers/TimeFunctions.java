@@ -27,9 +27,13 @@ import it.units.erallab.hmsrobots.util.Domain;
 import it.units.erallab.hmsrobots.util.Grid;
 import it.units.erallab.hmsrobots.util.SerializableFunction;
 
-import java.util.Objects;
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
 
 /**
+ * Functions which are {@link it.units.erallab.hmsrobots.util.SerializableDoubleUnaryOperator} are applied without
+ * boxing the time and the output.
+ *
  * @author Eric Medvet <eric.medvet@gmail.com>
  */
 public class TimeFunctions implements Controller<ControllableVoxel>, Snapshottable {
@@ -37,7 +41,11 @@ public class TimeFunctions implements Controller<ControllableVoxel>, Snapshottab
   @JsonProperty
   private final Grid<SerializableFunction<Double, Double>> functions;
 
-  private double[] outputs;
+  // coordinates of the cells with both a voxel and a function, built at the first control step after a reset
+  private transient int[] xs;
+  private transient int[] ys;
+  private transient DoubleUnaryOperator[] operators;
+  private transient double[] outputs;
 
   @JsonCreator
   public TimeFunctions(
@@ -46,23 +54,73 @@ public class TimeFunctions implements Controller<ControllableVoxel>, Snapshottab
     this.functions = functions;
   }
 
+  @Override
+  public TimeFunctions copy() {
+    return new TimeFunctions(Grid.copy(functions));
+  }
+
   @Override
   public void control(double t, Grid<? extends ControllableVoxel> voxels) {
-    outputs = new double[(int) voxels.values().stream().filter(Objects::nonNull).count()];
+    if (xs == null) {
+      prepare(voxels);
+    }
+    compute(t, outputs);
+    for (int i = 0; i < xs.length; i++) {
+      voxels.get(xs[i], ys[i]).applyForce(outputs[i]);
+    }
+  }
+
+  private void prepare(Grid<? extends ControllableVoxel> voxels) {
+    int n = 0;
+    for (Grid.Entry<? extends ControllableVoxel> entry : voxels) {
+      if ((entry.getValue() != null) && (functions.get(entry.getX(), entry.getY()) != null)) {
+        n = n + 1;
+      }
+    }
+    xs = new int[n];
+    ys = new int[n];
+    outputs = new double[n];
     int c = 0;
     for (Grid.Entry<? extends ControllableVoxel> entry : voxels) {
-      SerializableFunction<Double, Double> function = functions.get(entry.getX(), entry.getY());
-      if ((entry.getValue() != null) && (function != null)) {
-        double v = function.apply(t);
-        entry.getValue().applyForce(v);
-        outputs[c] = v;
+      if ((entry.getValue() != null) && (functions.get(entry.getX(), entry.getY()) != null)) {
+        xs[c] = entry.getX();
+        ys[c] = entry.getY();
         c = c + 1;
       }
     }
+    prepare(xs, ys);
+  }
+
+  /**
+   * Called once the cells to be controlled are known, before the first {@link #compute(double, double[])}.
+   *
+   * @param xs the x coordinates of the controlled cells
+   * @param ys the y coordinates of the controlled cells
+   */
+  protected void prepare(int[] xs, int[] ys) {
+    operators = new DoubleUnaryOperator[xs.length];
+    for (int i = 0; i < xs.length; i++) {
+      SerializableFunction<Double, Double> function = functions.get(xs[i], ys[i]);
+      operators[i] = (function instanceof DoubleUnaryOperator) ? (DoubleUnaryOperator) function : function::apply;
+    }
+  }
+
+  /**
+   * Computes the outputs for the controlled cells, in the order given to {@link #prepare(int[], int[])}.
+   *
+   * @param t       the current time
+   * @param outputs the array to be filled with the outputs
+   */
+  protected void compute(double t, double[] outputs) {
+    for (int i = 0; i < outputs.length; i++) {
+      outputs[i] = operators[i].applyAsDouble(t);
+    }
   }
 
   @Override
   public void reset() {
+    xs = null;
+    ys = null;
   }
 
   public Grid<SerializableFunction<Double, Double>> getFunctions() {
@@ -72,7 +130,7 @@ public class TimeFunctions implements Controller<ControllableVoxel>, Snapshottab
   @Override
   public Snapshot getSnapshot() {
     return new Snapshot(
-        new StackedScopedReadings(new ScopedReadings(outputs, Domain.of(-1d, 1d, outputs.length))),
+        new StackedScopedReadings(new ScopedReadings(Arrays.copyOf(outputs, outputs.length), Domain.of(-1d, 1d, outputs.length))),
         getClass()
     );
   }
@@ -1,5 +1,7 @@
 package it.units.erallab.hmsrobots.core.controllers;
 
+import it.units.erallab.hmsrobots.util.SerializationUtils;
+
 import java.io.Serializable;
 
 /**
@@ -11,4 +13,8 @@ public interface TimedRealFunction extends Serializable {
   int getInputDimension();
 
   int getOutputDimension();
+
+  default TimedRealFunction copy() {
+    return SerializationUtils.clone(this);
+  }
 }
@@ -22,12 +22,14 @@ import it.units.erallab.hmsrobots.core.sensors.Sensor;
 import it.units.erallab.hmsrobots.core.sensors.Touch;
 import it.units.erallab.hmsrobots.core.snapshots.VoxelPoly;
 import it.units.erallab.hmsrobots.util.Domain;
+import it.units.erallab.hmsrobots.util.RandomStreams;
+import it.units.erallab.hmsrobots.util.Seedable;
 import org.apache.commons.lang3.ArrayUtils;
 import org.dyn4j.dynamics.joint.DistanceJoint;
 
 import java.util.*;
 
-public class BreakableVoxel extends SensingVoxel {
+public class BreakableVoxel extends SensingVoxel implements Seedable {
 
   public enum ComponentType {
     ACTUATOR, SENSORS, STRUCTURE
@@ -58,7 +60,8 @@ public class BreakableVoxel extends SensingVoxel {
   private transient double lastControlEnergy;
   private transient double lastAreaRatioEnergy;
   private transient double[] sensorReadings;
-  private transient Random random;
+  private long streamSeed;
+  private transient SplittableRandom random;
 
   @JsonCreator
   public BreakableVoxel(
@@ -85,6 +88,7 @@ public class BreakableVoxel extends SensingVoxel {
   ) {
     super(sideLength, massSideLengthRatio, springF, springD, massLinearDamping, massAngularDamping, friction, restitution, mass, limitContractionFlag, massCollisionFlag, areaRatioMaxDelta, springScaffoldings, maxForce, forceMethod, sensors);
     this.randomSeed = randomSeed;
+    streamSeed = randomSeed;
     this.malfunctions = malfunctions;
     this.triggerThresholds = triggerThresholds;
     this.restoreTime = restoreTime;
@@ -96,6 +100,7 @@ public class BreakableVoxel extends SensingVoxel {
   public BreakableVoxel(double maxForce, ForceMethod forceMethod, List<Sensor> sensors, long randomSeed, Map<ComponentType, Set<MalfunctionType>> malfunctions, Map<MalfunctionTrigger, Double> triggerThresholds, double restoreTime) {
     super(maxForce, forceMethod, sensors);
     this.randomSeed = randomSeed;
+    streamSeed = randomSeed;
     this.malfunctions = malfunctions;
     this.triggerThresholds = triggerThresholds;
     this.restoreTime = restoreTime;
@@ -107,6 +112,7 @@ public class BreakableVoxel extends SensingVoxel {
   public BreakableVoxel(List<Sensor> sensors, long randomSeed, Map<ComponentType, Set<MalfunctionType>> malfunctions, Map<MalfunctionTrigger, Double> triggerThresholds, double restoreTime) {
     super(sensors);
     this.randomSeed = randomSeed;
+    streamSeed = randomSeed;
     this.malfunctions = malfunctions;
     this.triggerThresholds = triggerThresholds;
     this.restoreTime = restoreTime;
@@ -116,6 +122,24 @@ public class BreakableVoxel extends SensingVoxel {
     reset();
   }
 
+  protected BreakableVoxel(BreakableVoxel other) {
+    super(other);
+    randomSeed = other.randomSeed;
+    streamSeed = other.randomSeed;
+    malfunctions = other.malfunctions;
+    triggerThresholds = other.triggerThresholds;
+    restoreTime = other.restoreTime;
+    triggerCounters = new EnumMap<>(MalfunctionTrigger.class);
+    state = new EnumMap<>(ComponentType.class);
+    Arrays.stream(ComponentType.values()).sequential().forEach(component -> state.put(component, MalfunctionType.NONE));
+    reset();
+  }
+
+  @Override
+  public BreakableVoxel copy() {
+    return new BreakableVoxel(this);
+  }
+
   @Override
   public void applyForce(double f) {
     double innerF = f;
@@ -175,15 +199,16 @@ public class BreakableVoxel extends SensingVoxel {
 
   @Override
   public void reset() {
+    //clear malfunctions before resetting the voxel, which applies a zero force
+    Arrays.stream(ComponentType.values()).sequential().forEach(component -> state.put(component, MalfunctionType.NONE));
+    random = RandomStreams.stream(streamSeed);
     super.reset();
     lastT = 0d;
     lastBreakT = 0d;
     lastControlEnergy = 0d;
     lastAreaRatioEnergy = 0d;
-    random = new Random(randomSeed);
     sensorReadings = null;
     Arrays.stream(MalfunctionTrigger.values()).sequential().forEach(trigger -> triggerCounters.put(trigger, 0d));
-    Arrays.stream(ComponentType.values()).sequential().forEach(component -> state.put(component, MalfunctionType.NONE));
     updateStructureMalfunctionType();
   }
 
@@ -199,6 +224,21 @@ public class BreakableVoxel extends SensingVoxel {
     };
   }
 
+  @Override
+  public void setRandomSeed(long seed) {
+    streamSeed = seed;
+  }
+
+  @Override
+  public int fillSensorReadings(double[] buffer, int offset) {
+    if (sensorReadings == null) {
+      return super.fillSensorReadings(buffer, offset);
+    }
+    double[] readings = getSensorReadings();
+    System.arraycopy(readings, 0, buffer, offset, readings.length);
+    return readings.length;
+  }
+
   @Override
   public void act(double t) {
     super.act(t);
@@ -66,6 +66,12 @@ public class ControllableVoxel extends Voxel {
     this.forceMethod = forceMethod;
   }
 
+  protected ControllableVoxel(ControllableVoxel other) {
+    super(other);
+    maxForce = other.maxForce;
+    forceMethod = other.forceMethod;
+  }
+
   public ControllableVoxel(double maxForce, ForceMethod forceMethod) {
     this.maxForce = maxForce;
     this.forceMethod = forceMethod;
@@ -75,6 +81,11 @@ public class ControllableVoxel extends Voxel {
     this(MAX_FORCE, FORCE_METHOD);
   }
 
+  @Override
+  public ControllableVoxel copy() {
+    return new ControllableVoxel(this);
+  }
+
   public void applyForce(double f) {
     if (Math.abs(f) > 1d) {
       f = Math.signum(f);
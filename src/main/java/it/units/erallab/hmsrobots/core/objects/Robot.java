@@ -25,7 +25,11 @@ import it.units.erallab.hmsrobots.core.snapshots.RobotShape;
 import it.units.erallab.hmsrobots.core.snapshots.Snapshot;
 import it.units.erallab.hmsrobots.core.snapshots.Snapshottable;
 import it.units.erallab.hmsrobots.core.snapshots.VoxelPoly;
+import it.units.erallab.hmsrobots.core.sensors.CompositeSensor;
+import it.units.erallab.hmsrobots.core.sensors.Sensor;
 import it.units.erallab.hmsrobots.util.Grid;
+import it.units.erallab.hmsrobots.util.RandomStreams;
+import it.units.erallab.hmsrobots.util.Seedable;
 import org.dyn4j.dynamics.Body;
 import org.dyn4j.dynamics.World;
 import org.dyn4j.dynamics.joint.Joint;
@@ -44,7 +48,7 @@ import java.util.stream.Collectors;
 /**
  * @author Eric Medvet <eric.medvet@gmail.com>
  */
-public class Robot<V extends ControllableVoxel> implements Actionable, Serializable, WorldObject, Snapshottable {
+public class Robot<V extends ControllableVoxel> implements Actionable, Serializable, WorldObject, Snapshottable, Seedable {
 
   @JsonProperty
   private final Controller<V> controller;
@@ -63,12 +67,56 @@ public class Robot<V extends ControllableVoxel> implements Actionable, Serializa
     reset();
   }
 
+  /**
+   * Returns a new robot with copies of the controller and of the voxels of this one, without passing through
+   * serialization.
+   */
+  @SuppressWarnings("unchecked")
+  public Robot<V> copy() {
+    return new Robot<>(controller.copy(), Grid.create(voxels, v -> v == null ? null : (V) v.copy()));
+  }
+
   @Serial
   private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
     ois.defaultReadObject();
     reset();
   }
 
+  /**
+   * Sets, for each {@link Seedable} voxel, sensor, and controller of this robot, a seed derived from the given one
+   * (typically, the seed of an episode) and from the position of the component in the robot.
+   */
+  @Override
+  public void setRandomSeed(long seed) {
+    if (controller instanceof Seedable) {
+      ((Seedable) controller).setRandomSeed(RandomStreams.seed(seed, -1));
+    }
+    for (int gx = 0; gx < voxels.getW(); gx++) {
+      for (int gy = 0; gy < voxels.getH(); gy++) {
+        Voxel voxel = voxels.get(gx, gy);
+        long voxelKey = (long) gy * voxels.getW() + gx;
+        if (voxel instanceof Seedable) {
+          ((Seedable) voxel).setRandomSeed(RandomStreams.seed(seed, voxelKey));
+        }
+        if (voxel instanceof SensingVoxel) {
+          List<Sensor> sensors = ((SensingVoxel) voxel).getSensors();
+          for (int i = 0; i < sensors.size(); i++) {
+            setRandomSeed(sensors.get(i), RandomStreams.seed(seed, voxelKey, i));
+          }
+        }
+      }
+    }
+  }
+
+  private static void setRandomSeed(Sensor sensor, long seed) {
+    if (sensor instanceof Seedable) {
+      ((Seedable) sensor).setRandomSeed(seed);
+    }
+    if (sensor instanceof CompositeSensor) {
+      setRandomSeed(((CompositeSensor) sensor).getSensor(), RandomStreams.seed(seed, 0));
+    }
+  }
+
   private void assemble() {
     joints = new ArrayList<>();
     //translate voxels
@@ -115,7 +163,11 @@ public class Robot<V extends ControllableVoxel> implements Actionable, Serializa
         getClass()
     );
     if (controller instanceof Snapshottable) {
-      snapshot.getChildren().add(((Snapshottable) controller).getSnapshot());
+      //wrapping controllers may have no snapshot
+      Snapshot controllerSnapshot = ((Snapshottable) controller).getSnapshot();
+      if (controllerSnapshot != null) {
+        snapshot.getChildren().add(controllerSnapshot);
+      }
     }
     snapshot.getChildren().addAll(voxelSnapshots.values().stream().filter(Objects::nonNull).collect(Collectors.toList()));
     return snapshot;
@@ -22,8 +22,10 @@ import it.units.erallab.hmsrobots.core.sensors.Sensor;
 import it.units.erallab.hmsrobots.core.snapshots.Snapshot;
 import org.apache.commons.lang3.ArrayUtils;
 
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class SensingVoxel extends ControllableVoxel {
 
@@ -62,6 +64,16 @@ public class SensingVoxel extends ControllableVoxel {
     this.sensors = sensors;
   }
 
+  protected SensingVoxel(SensingVoxel other) {
+    super(other);
+    sensors = other.sensors.stream().map(Sensor::copy).collect(Collectors.toList());
+  }
+
+  @Override
+  public SensingVoxel copy() {
+    return new SensingVoxel(this);
+  }
+
   @Override
   public void act(double t) {
     super.act(t);
@@ -84,6 +96,27 @@ public class SensingVoxel extends ControllableVoxel {
         .orElse(new double[sensors.stream().mapToInt(s -> s.getDomains().length).sum()]);
   }
 
+  /**
+   * Copies the values of {@link #getSensorReadings()} in {@code buffer}, starting from {@code offset}, without
+   * allocating them; readings not yet available are copied as zeros.
+   *
+   * @return the number of copied values
+   */
+  public int fillSensorReadings(double[] buffer, int offset) {
+    int c = offset;
+    for (Sensor sensor : sensors) {
+      double[] readings = sensor.getReadings();
+      int n = sensor.getDomains().length;
+      if (readings == null) {
+        Arrays.fill(buffer, c, c + n, 0d);
+      } else {
+        System.arraycopy(readings, 0, buffer, c, n);
+      }
+      c = c + n;
+    }
+    return c - offset;
+  }
+
   public List<Sensor> getSensors() {
     return sensors;
   }
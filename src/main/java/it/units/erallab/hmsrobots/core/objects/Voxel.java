@@ -210,10 +210,22 @@ public class Voxel implements Actionable, Serializable, Snapshottable, WorldObje
     assemble();
   }
 
+  protected Voxel(Voxel other) {
+    this(other.sideLength, other.massSideLengthRatio, other.springF, other.springD, other.massLinearDamping, other.massAngularDamping, other.friction, other.restitution, other.mass, other.limitContractionFlag, other.massCollisionFlag, other.areaRatioMaxDelta, other.springScaffoldings);
+  }
+
   public Voxel() {
     this(SIDE_LENGTH, MASS_SIDE_LENGTH_RATIO, SPRING_F, SPRING_D, MASS_LINEAR_DAMPING, MASS_ANGULAR_DAMPING, FRICTION, RESTITUTION, MASS, LIMIT_CONTRACTION_FLAG, MASS_COLLISION_FLAG, AREA_RATIO_MAX_DELTA, SPRING_SCAFFOLDINGS);
   }
 
+  /**
+   * Returns a new voxel with the same parameters of this one, as freshly built, without passing through serialization.
+   * Subclasses adding state have to override this method.
+   */
+  public Voxel copy() {
+    return new Voxel(this);
+  }
+
   private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
     ois.defaultReadObject();
     assemble();
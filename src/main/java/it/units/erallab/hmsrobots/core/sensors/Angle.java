@@ -28,6 +28,11 @@ public class Angle extends AbstractSensor {
     super(DOMAINS);
   }
 
+  @Override
+  public Angle copy() {
+    return new Angle();
+  }
+
   @Override
   protected double[] sense(double t) {
     return new double[]{voxel.getAngle()};
@@ -28,6 +28,11 @@ public class AppliedForce extends AbstractSensor {
     super(DOMAINS);
   }
 
+  @Override
+  public AppliedForce copy() {
+    return new AppliedForce();
+  }
+
   @Override
   protected double[] sense(double t) {
     return new double[]{((ControllableVoxel) voxel).getLastAppliedForce()};
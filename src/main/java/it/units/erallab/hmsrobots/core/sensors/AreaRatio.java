@@ -29,6 +29,11 @@ public class AreaRatio extends AbstractSensor {
     super(DOMAINS);
   }
 
+  @Override
+  public AreaRatio copy() {
+    return new AreaRatio();
+  }
+
   @Override
   public double[] sense(double t) {
     return new double[]{voxel.getAreaRatio()};
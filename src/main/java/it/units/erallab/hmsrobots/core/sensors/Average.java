@@ -30,6 +30,11 @@ public class Average extends AggregatorSensor {
     reset();
   }
 
+  @Override
+  public Average copy() {
+    return new Average(sensor.copy(), interval);
+  }
+
   @Override
   protected double[] aggregate(double t) {
     double[] sums = new double[readings.firstEntry().getValue().length];
@@ -37,6 +37,11 @@ public class Constant extends AbstractSensor {
     this.values = values;
   }
 
+  @Override
+  public Constant copy() {
+    return new Constant(Arrays.copyOf(values, values.length));
+  }
+
   private static Domain[] computeDomains(double... values) {
     double max = Arrays.stream(values).max().orElse(1d);
     double min = Arrays.stream(values).min().orElse(0d);
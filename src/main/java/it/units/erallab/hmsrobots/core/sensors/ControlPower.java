@@ -36,6 +36,11 @@ public class ControlPower extends AbstractSensor {
     this.controlInterval = controlInterval;
   }
 
+  @Override
+  public ControlPower copy() {
+    return new ControlPower(controlInterval);
+  }
+
   @Override
   public double[] sense(double t) {
     double power = voxel.getControlEnergy() / (t - lastT);
@@ -29,6 +29,11 @@ public class Crumpling extends AbstractSensor {
     super(DOMAINS);
   }
 
+  @Override
+  public Crumpling copy() {
+    return new Crumpling();
+  }
+
   @Override
   public double[] sense(double t) {
     double c = 0d;
@@ -38,6 +38,11 @@ public class DynamicNormalization extends AggregatorSensor {
     reset();
   }
 
+  @Override
+  public DynamicNormalization copy() {
+    return new DynamicNormalization(sensor.copy(), interval);
+  }
+
   @Override
   protected double[] aggregate(double t) {
     double[] currentReadings = sensor.getReadings();
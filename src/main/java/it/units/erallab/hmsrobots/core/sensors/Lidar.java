@@ -89,6 +89,11 @@ public class Lidar extends AbstractSensor {
     this.rayDirections = rayDirections;
   }
 
+  @Override
+  public Lidar copy() {
+    return new Lidar(rayLength, Arrays.copyOf(rayDirections, rayDirections.length));
+  }
+
   public Lidar(double rayLength, Map<Side, Integer> raysPerSide) {
     this(
         rayLength,
@@ -33,6 +33,11 @@ public class Malfunction extends AbstractSensor {
     super(DOMAINS);
   }
 
+  @Override
+  public Malfunction copy() {
+    return new Malfunction();
+  }
+
   @Override
   public double[] sense(double t) {
     if (voxel instanceof BreakableVoxel) {
@@ -20,13 +20,16 @@ package it.units.erallab.hmsrobots.core.sensors;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import it.units.erallab.hmsrobots.util.RandomStreams;
+import it.units.erallab.hmsrobots.util.Seedable;
+
 import java.util.Arrays;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * @author eric on 2020/12/18 for 2dhmsr
  */
-public class Noisy extends CompositeSensor {
+public class Noisy extends CompositeSensor implements Seedable {
 
   @JsonProperty
   private final double sigma;
@@ -34,7 +37,8 @@ public class Noisy extends CompositeSensor {
   private final long seed;
 
   private final double[] sigmas;
-  private final Random random;
+  private long randomSeed;
+  private transient SplittableRandom random;
 
   @JsonCreator
   public Noisy(
@@ -45,18 +49,34 @@ public class Noisy extends CompositeSensor {
     super(sensor.getDomains(), sensor);
     this.sigma = sigma;
     this.seed = seed;
-    random = new Random(seed);
+    randomSeed = seed;
     sigmas = Arrays.stream(sensor.getDomains())
         .mapToDouble(d -> Math.abs(d.getMax() - d.getMin()) * sigma)
         .toArray();
     reset();
   }
 
+  @Override
+  public Noisy copy() {
+    return new Noisy(sensor.copy(), sigma, seed);
+  }
+
+  @Override
+  public void setRandomSeed(long seed) {
+    randomSeed = seed;
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    random = RandomStreams.stream(randomSeed);
+  }
+
   @Override
   public double[] sense(double t) {
     double[] values = sensor.getReadings();
     for (int i = 0; i < values.length; i++) {
-      values[i] = values[i] + random.nextGaussian() * sigmas[i];
+      values[i] = values[i] + RandomStreams.nextGaussian(random) * sigmas[i];
     }
     return values;
   }
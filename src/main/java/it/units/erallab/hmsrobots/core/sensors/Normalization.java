@@ -34,6 +34,11 @@ public class Normalization extends CompositeSensor {
     );
   }
 
+  @Override
+  public Normalization copy() {
+    return new Normalization(sensor.copy());
+  }
+
   @Override
   public double[] sense(double t) {
     double[] innerValues = sensor.getReadings();
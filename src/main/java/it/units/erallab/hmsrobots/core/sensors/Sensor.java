@@ -21,6 +21,7 @@ import it.units.erallab.hmsrobots.core.Actionable;
 import it.units.erallab.hmsrobots.core.objects.SensingVoxel;
 import it.units.erallab.hmsrobots.core.snapshots.Snapshottable;
 import it.units.erallab.hmsrobots.util.Domain;
+import it.units.erallab.hmsrobots.util.SerializationUtils;
 
 import java.io.Serializable;
 
@@ -33,4 +34,11 @@ public interface Sensor extends Serializable, Actionable, Snapshottable {
 
   double[] getReadings();
 
+  /**
+   * Returns a new sensor with the same configuration of this one, as freshly built and not bound to any voxel.
+   */
+  default Sensor copy() {
+    return SerializationUtils.clone(this);
+  }
+
 }
@@ -35,6 +35,11 @@ public class SoftNormalization extends CompositeSensor {
     );
   }
 
+  @Override
+  public SoftNormalization copy() {
+    return new SoftNormalization(sensor.copy());
+  }
+
   @Override
   public double[] sense(double t) {
     double[] innerValues = sensor.getReadings();
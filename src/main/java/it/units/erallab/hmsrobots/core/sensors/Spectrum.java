@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.core.sensors;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import it.units.erallab.hmsrobots.behavior.SlidingSpectrum;
+import it.units.erallab.hmsrobots.util.Domain;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Senses, for each reading of the inner sensor, the amplitudes of {@code nBins} frequency bins over the last
+ * {@code interval} seconds, computed incrementally with a {@link SlidingSpectrum}. The sampling interval is taken from
+ * the first two invocations; until then, readings are 0.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class Spectrum extends CompositeSensor {
+
+  @JsonProperty
+  private final double interval;
+  @JsonProperty
+  private final double minF;
+  @JsonProperty
+  private final double maxF;
+  @JsonProperty
+  private final int nBins;
+
+  private SlidingSpectrum[] slidingSpectra;
+  private double firstT;
+  private double[] firstReadings;
+
+  @JsonCreator
+  public Spectrum(
+      @JsonProperty("sensor") Sensor sensor,
+      @JsonProperty("interval") double interval,
+      @JsonProperty("minF") double minF,
+      @JsonProperty("maxF") double maxF,
+      @JsonProperty("nBins") int nBins
+  ) {
+    super(
+        Arrays.stream(sensor.getDomains())
+            .flatMap(d -> IntStream.range(0, nBins)
+                .mapToObj(i -> Domain.of(0d, Math.max(Math.abs(d.getMin()), Math.abs(d.getMax())))))
+            .toArray(Domain[]::new),
+        sensor
+    );
+    this.interval = interval;
+    this.minF = minF;
+    this.maxF = maxF;
+    this.nBins = nBins;
+    reset();
+  }
+
+  @Override
+  public Spectrum copy() {
+    return new Spectrum(sensor.copy(), interval, minF, maxF, nBins);
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    slidingSpectra = null;
+    firstT = Double.NaN;
+    firstReadings = null;
+  }
+
+  @Override
+  protected double[] sense(double t) {
+    double[] currentReadings = sensor.getReadings();
+    double[] values = new double[domains.length];
+    if (slidingSpectra == null) {
+      if (Double.isNaN(firstT) || t <= firstT) {
+        firstT = t;
+        firstReadings = Arrays.copyOf(currentReadings, currentReadings.length);
+        return values;
+      }
+      double dT = t - firstT;
+      int windowSize = (int) Math.max(1, Math.round(interval / dT));
+      slidingSpectra = new SlidingSpectrum[currentReadings.length];
+      for (int i = 0; i < currentReadings.length; i++) {
+        slidingSpectra[i] = new SlidingSpectrum(windowSize, dT, minF, maxF, nBins);
+        slidingSpectra[i].add(firstReadings[i]);
+      }
+    }
+    for (int i = 0; i < currentReadings.length; i++) {
+      slidingSpectra[i].add(currentReadings[i]);
+      double[] magnitudes = slidingSpectra[i].magnitudes();
+      for (int b = 0; b < nBins; b++) {
+        // magnitudes are normalized by the window size to be comparable with the domain of the inner sensor
+        values[i * nBins + b] = magnitudes[b] / (double) slidingSpectra[i].getWindowSize();
+      }
+    }
+    return values;
+  }
+
+  @Override
+  public String toString() {
+    return "Spectrum{" +
+        "sensor=" + sensor +
+        ", interval=" + interval +
+        ", minF=" + minF +
+        ", maxF=" + maxF +
+        ", nBins=" + nBins +
+        '}';
+  }
+
+}
@@ -42,6 +42,11 @@ public class TimeFunction extends AbstractSensor {
     this.function = function;
   }
 
+  @Override
+  public TimeFunction copy() {
+    return new TimeFunction(function, min, max);
+  }
+
   @Override
   public double[] sense(double t) {
     return new double[]{function.apply(t)};
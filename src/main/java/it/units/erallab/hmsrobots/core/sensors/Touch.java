@@ -32,6 +32,11 @@ public class Touch extends AbstractSensor {
     super(DOMAINS);
   }
 
+  @Override
+  public Touch copy() {
+    return new Touch();
+  }
+
   @Override
   public double[] sense(double t) {
     return isTouching(voxel) ? new double[]{1d} : new double[]{0d};
@@ -41,6 +41,11 @@ public class Trend extends AggregatorSensor {
     reset();
   }
 
+  @Override
+  public Trend copy() {
+    return new Trend(sensor.copy(), interval);
+  }
+
   @Override
   protected double[] aggregate(double t) {
     double localInterval = readings.lastKey() - readings.firstKey();
@@ -54,6 +54,11 @@ public class Velocity extends AbstractSensor {
     this.axes = axes;
   }
 
+  @Override
+  public Velocity copy() {
+    return new Velocity(rotated, maxVelocityNorm, EnumSet.copyOf(axes));
+  }
+
   @Override
   public double[] sense(double t) {
     double[] values = new double[domains.length];
@@ -23,4 +23,15 @@ public interface SnapshotListener {
 
   void listen(double t, Snapshot snapshot);
 
+  /**
+   * Tells whether this listener is going to use a snapshot taken at time {@code t}: tasks call this before building
+   * the snapshot and skip the (costly) snapshot construction if the answer is {@code false}.
+   *
+   * @param t the simulated time of the snapshot
+   * @return {@code true} if {@link #listen(double, Snapshot)} should be invoked for {@code t}
+   */
+  default boolean wantsSnapshot(double t) {
+    return true;
+  }
+
 }
@@ -21,5 +21,8 @@ package it.units.erallab.hmsrobots.core.snapshots;
  * @author eric on 2021/08/12 for 2dhmsr
  */
 public interface Snapshottable {
+  /**
+   * Returns the snapshot of this object, or null if it has none, e.g., when it wraps an object which is not snapshottable.
+   */
   Snapshot getSnapshot(); //TODO maybe later add a filter
 }
@@ -47,7 +47,7 @@ public abstract class AbstractTask<T, R> implements Task<T, R> {
     world.step(1);
     objects.stream().filter(o -> o instanceof Actionable).forEach(o -> ((Actionable) o).act(newT));
     //possibly output snapshot
-    if (listener != null) {
+    if (listener != null && listener.wantsSnapshot(newT)) {
       listener.listen(
           newT,
           Snapshot.world(
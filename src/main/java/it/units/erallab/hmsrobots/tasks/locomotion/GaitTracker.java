@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.tasks.locomotion;
+
+import it.units.erallab.hmsrobots.behavior.BehaviorUtils;
+import it.units.erallab.hmsrobots.behavior.Footprint;
+import it.units.erallab.hmsrobots.behavior.Gait;
+import it.units.erallab.hmsrobots.behavior.GaitEngine;
+import it.units.erallab.hmsrobots.core.geometry.BoundingBox;
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.core.snapshots.SnapshotListener;
+import it.units.erallab.hmsrobots.core.snapshots.VoxelPoly;
+
+import java.util.*;
+
+/**
+ * Tracks the footprints of a robot while a {@link Locomotion} episode runs: each observed footprint is accumulated in
+ * the current interval and, when the interval is over, reduced to its quantized footprint, which is stored as an
+ * integer code. Gaits are then computed on the sequence of codes, with the same outcome of
+ * {@link BehaviorUtils#computeMainGait(double, double, SortedMap)} on the full history of footprints, which is not
+ * retained by the tracker. For not retaining the history of observations in the outcome either, the episode has to be
+ * run with {@link Locomotion#apply(Robot, SnapshotListener, Locomotion.StepObserver, boolean)}. An instance is meant
+ * to observe one episode at a time.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class GaitTracker implements Locomotion.StepObserver {
+
+  private final double interval;
+  private final double longestInterval;
+  private final int n;
+
+  private final List<Footprint> dictionary;
+  private final Map<Footprint, Integer> codes;
+  private final int[] touchCounts;
+  private int[] sequence;
+  private double[] ts;
+  private int length;
+  private double intervalStartT;
+  private int nOfIntervalFootprints;
+  private double[] minXs;
+  private double[] maxXs;
+  private boolean[] touchings;
+
+  public GaitTracker(double interval, double longestInterval, int n) {
+    this.interval = interval;
+    this.longestInterval = longestInterval;
+    this.n = n;
+    dictionary = new ArrayList<>();
+    codes = new HashMap<>();
+    touchCounts = new int[n];
+    sequence = new int[16];
+    ts = new double[16];
+    minXs = new double[0];
+    maxXs = new double[0];
+    touchings = new boolean[0];
+    reset();
+  }
+
+  public void reset() {
+    dictionary.clear();
+    codes.clear();
+    Arrays.fill(touchCounts, 0);
+    length = 0;
+    intervalStartT = Double.NaN;
+    nOfIntervalFootprints = 0;
+  }
+
+  @Override
+  public void observe(double t, Outcome.Observation observation) {
+    if (Double.isNaN(intervalStartT)) {
+      intervalStartT = t;
+    }
+    while (t >= intervalStartT + interval) {
+      closeInterval();
+    }
+    int nOfVoxels = 0;
+    for (VoxelPoly poly : observation.getVoxelPolies().values()) {
+      if (poly != null) {
+        nOfVoxels = nOfVoxels + 1;
+      }
+    }
+    if (minXs.length != nOfVoxels) {
+      minXs = new double[nOfVoxels];
+      maxXs = new double[nOfVoxels];
+      touchings = new boolean[nOfVoxels];
+    }
+    int i = 0;
+    for (VoxelPoly poly : observation.getVoxelPolies().values()) {
+      if (poly != null) {
+        BoundingBox box = poly.boundingBox();
+        minXs[i] = box.min.x;
+        maxXs[i] = box.max.x;
+        touchings[i] = poly.isTouchingGround();
+        i = i + 1;
+      }
+    }
+    boolean[] mask = BehaviorUtils.computeFootprint(minXs, maxXs, touchings, n).getMask();
+    for (int x = 0; x < n; x++) {
+      if (mask[x]) {
+        touchCounts[x] = touchCounts[x] + 1;
+      }
+    }
+    nOfIntervalFootprints = nOfIntervalFootprints + 1;
+  }
+
+  private void closeInterval() {
+    length = length + appendCurrentInterval();
+    intervalStartT = intervalStartT + interval;
+    Arrays.fill(touchCounts, 0);
+    nOfIntervalFootprints = 0;
+  }
+
+  // writes the code of the current interval after the last closed one, without closing it, and returns 1, or 0 if
+  // nothing has been observed yet
+  private int appendCurrentInterval() {
+    if (Double.isNaN(intervalStartT)) {
+      return 0;
+    }
+    boolean[] mask = new boolean[n];
+    for (int x = 0; x < n; x++) {
+      mask[x] = touchCounts[x] > nOfIntervalFootprints / 2d;
+    }
+    Footprint footprint = new Footprint(mask);
+    Integer code = codes.get(footprint);
+    if (code == null) {
+      code = dictionary.size();
+      dictionary.add(footprint);
+      codes.put(footprint, code);
+    }
+    if (length == sequence.length) {
+      sequence = Arrays.copyOf(sequence, length * 2);
+      ts = Arrays.copyOf(ts, length * 2);
+    }
+    sequence[length] = code;
+    ts[length] = intervalStartT;
+    return 1;
+  }
+
+  public SortedMap<Double, Footprint> getQuantizedFootprints() {
+    int currentLength = length + appendCurrentInterval();
+    SortedMap<Double, Footprint> footprints = new TreeMap<>();
+    for (int i = 0; i < currentLength; i++) {
+      footprints.put(ts[i], dictionary.get(sequence[i]));
+    }
+    return footprints;
+  }
+
+  public List<Gait> getGaits() {
+    return GaitEngine.computeGaits(
+        sequence,
+        ts,
+        length + appendCurrentInterval(),
+        dictionary,
+        2,
+        (int) Math.round(longestInterval / interval),
+        interval
+    );
+  }
+
+  public Gait getMainGait() {
+    return GaitEngine.mainGait(getGaits());
+  }
+
+}
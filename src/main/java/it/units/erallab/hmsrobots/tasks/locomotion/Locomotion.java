@@ -43,23 +43,59 @@ public class Locomotion extends AbstractTask<Robot<?>, Outcome> {
   private static final int MASK_BINS = 16;
   public static final double TERRAIN_BORDER_WIDTH = 10d;
 
+  /**
+   * Observes the robot at each simulation step of a locomotion episode, e.g., for computing descriptors on the fly.
+   */
+  public interface StepObserver {
+    void observe(double t, Outcome.Observation observation);
+  }
+
   private final double finalT;
   private final double[][] groundProfile;
   private final double initialPlacement;
+  private final Long randomSeed;
 
   public Locomotion(double finalT, double[][] groundProfile, Settings settings) {
     this(finalT, groundProfile, groundProfile[0][1] + INITIAL_PLACEMENT_X_GAP, settings);
   }
 
   public Locomotion(double finalT, double[][] groundProfile, double initialPlacement, Settings settings) {
+    this(finalT, groundProfile, initialPlacement, settings, null);
+  }
+
+  public Locomotion(double finalT, double[][] groundProfile, Settings settings, long randomSeed) {
+    this(finalT, groundProfile, groundProfile[0][1] + INITIAL_PLACEMENT_X_GAP, settings, randomSeed);
+  }
+
+  /**
+   * Builds a locomotion task whose episodes are seeded with {@code randomSeed}, i.e., where the random components of
+   * the robot (e.g., noisy sensors) are reseeded through {@link Robot#setRandomSeed(long)} before each episode, so that
+   * episodes with the same seed have the same outcome regardless of the thread running them. If {@code randomSeed} is
+   * null, the robot is not reseeded.
+   */
+  public Locomotion(double finalT, double[][] groundProfile, double initialPlacement, Settings settings, Long randomSeed) {
     super(settings);
     this.finalT = finalT;
     this.groundProfile = groundProfile;
     this.initialPlacement = initialPlacement;
+    this.randomSeed = randomSeed;
   }
 
   @Override
   public Outcome apply(Robot<?> robot, SnapshotListener listener) {
+    return apply(robot, listener, null);
+  }
+
+  public Outcome apply(Robot<?> robot, SnapshotListener listener, StepObserver observer) {
+    return apply(robot, listener, observer, true);
+  }
+
+  /**
+   * Runs an episode notifying the observer, if any, of each observation. If {@code retainObservations} is false, the
+   * observations are not kept after having been notified and the returned outcome contains only the first and the last
+   * one, which suffice for, e.g., distance, time, and energy, but not for descriptors computed on the full history.
+   */
+  public Outcome apply(Robot<?> robot, SnapshotListener listener, StepObserver observer, boolean retainObservations) {
     StopWatch stopWatch = StopWatch.createStarted();
     //init world
     World world = new World();
@@ -68,6 +104,9 @@ public class Locomotion extends AbstractTask<Robot<?>, Outcome> {
     Ground ground = new Ground(groundProfile[0], groundProfile[1]);
     ground.addTo(world);
     worldObjects.add(ground);
+    if (randomSeed != null) {
+      robot.setRandomSeed(randomSeed);
+    }
     robot.reset();
     //position robot: translate on x
     BoundingBox boundingBox = robot.boundingBox();
@@ -84,17 +123,33 @@ public class Locomotion extends AbstractTask<Robot<?>, Outcome> {
     robot.addTo(world);
     worldObjects.add(robot);
     //run
-    Map<Double, Outcome.Observation> observations = new HashMap<>((int) Math.ceil(finalT / settings.getStepFrequency()));
+    Map<Double, Outcome.Observation> observations = new HashMap<>(
+        retainObservations ? (int) Math.ceil(finalT / settings.getStepFrequency()) : 2
+    );
     double t = 0d;
+    double lastT = Double.NaN;
+    Outcome.Observation lastObservation = null;
     while (t < finalT) {
       t = AbstractTask.updateWorld(t, settings.getStepFrequency(), world, worldObjects, listener);
-      observations.put(t, new Outcome.Observation(
+      Outcome.Observation observation = new Outcome.Observation(
           Grid.create(robot.getVoxels(), v -> v == null ? null : v.getVoxelPoly()),
           ground.yAt(robot.getCenter().x),
           (double) stopWatch.getTime(TimeUnit.MILLISECONDS) / 1000d
-      ));
+      );
+      if (retainObservations || observations.isEmpty()) {
+        observations.put(t, observation);
+      } else {
+        lastT = t;
+        lastObservation = observation;
+      }
+      if (observer != null) {
+        observer.observe(t, observation);
+      }
     }
     stopWatch.stop();
+    if (lastObservation != null) {
+      observations.put(lastT, lastObservation);
+    }
     //prepare outcome
     return new Outcome(observations);
   }
@@ -18,15 +18,15 @@
 package it.units.erallab.hmsrobots.tasks.locomotion;
 
 import it.units.erallab.hmsrobots.behavior.BehaviorUtils;
-import it.units.erallab.hmsrobots.behavior.Footprint;
 import it.units.erallab.hmsrobots.core.geometry.Point2;
 import it.units.erallab.hmsrobots.core.snapshots.VoxelPoly;
+import it.units.erallab.hmsrobots.util.BooleanGrid;
 import it.units.erallab.hmsrobots.util.Domain;
 import it.units.erallab.hmsrobots.util.Grid;
 
 import java.util.*;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class Outcome {
 
@@ -129,82 +129,71 @@ public class Outcome {
   }
 
   public SortedMap<Domain, Double> getCenterXPositionSpectrum(double minF, double maxF, int nBins) {
-    SortedMap<Double, Double> signal = new TreeMap<>(
-        observations.entrySet().stream().collect(Collectors.toMap(
-            Map.Entry::getKey,
-            e -> BehaviorUtils.getCentralElement(e.getValue().getVoxelPolies()).center().x
-        )));
-    return BehaviorUtils.computeQuantizedSpectrum(signal, minF, maxF, nBins);
+    return computeCenterSpectrum(p -> p.center().x, minF, maxF, nBins);
   }
 
   public SortedMap<Domain, Double> getCenterYPositionSpectrum(double minF, double maxF, int nBins) {
-    SortedMap<Double, Double> signal = new TreeMap<>(
-        observations.entrySet().stream().collect(Collectors.toMap(
-            Map.Entry::getKey,
-            e -> BehaviorUtils.getCentralElement(e.getValue().getVoxelPolies()).center().y
-        )));
-    return BehaviorUtils.computeQuantizedSpectrum(signal, minF, maxF, nBins);
+    return computeCenterSpectrum(p -> p.center().y, minF, maxF, nBins);
   }
 
   public SortedMap<Domain, Double> getCenterXVelocitySpectrum(double minF, double maxF, int nBins) {
-    SortedMap<Double, Double> signal = new TreeMap<>(
-        observations.entrySet().stream().collect(Collectors.toMap(
-            Map.Entry::getKey,
-            e -> BehaviorUtils.getCentralElement(e.getValue().getVoxelPolies()).getLinearVelocity().x
-        )));
-    return BehaviorUtils.computeQuantizedSpectrum(signal, minF, maxF, nBins);
+    return computeCenterSpectrum(p -> p.getLinearVelocity().x, minF, maxF, nBins);
   }
 
   public SortedMap<Domain, Double> getCenterYVelocitySpectrum(double minF, double maxF, int nBins) {
-    SortedMap<Double, Double> signal = new TreeMap<>(
-        observations.entrySet().stream().collect(Collectors.toMap(
-            Map.Entry::getKey,
-            e -> BehaviorUtils.getCentralElement(e.getValue().getVoxelPolies()).getLinearVelocity().y
-        )));
-    return BehaviorUtils.computeQuantizedSpectrum(signal, minF, maxF, nBins);
+    return computeCenterSpectrum(p -> p.getLinearVelocity().y, minF, maxF, nBins);
   }
 
   public SortedMap<Domain, Double> getCenterAngleSpectrum(double minF, double maxF, int nBins) {
-    SortedMap<Double, Double> signal = new TreeMap<>(
-        observations.entrySet().stream().collect(Collectors.toMap(
-            Map.Entry::getKey,
-            e -> BehaviorUtils.getCentralElement(e.getValue().getVoxelPolies()).getAngle()
-        )));
-    return BehaviorUtils.computeQuantizedSpectrum(signal, minF, maxF, nBins);
+    return computeCenterSpectrum(VoxelPoly::getAngle, minF, maxF, nBins);
   }
 
-  public Grid<Boolean> getAveragePosture(int n) {
-    return BehaviorUtils.computeAveragePosture(
-        observations.values().stream()
-            .map(o -> BehaviorUtils.computePosture(
-                o.getVoxelPolies().values().stream()
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList()),
-                n
-            ))
-            .collect(Collectors.toList())
+  private SortedMap<Domain, Double> computeCenterSpectrum(ToDoubleFunction<VoxelPoly> f, double minF, double maxF, int nBins) {
+    List<Observation> observationList = new ArrayList<>(observations.values());
+    return BehaviorUtils.computeQuantizedSpectrum(
+        timeArray(),
+        i -> f.applyAsDouble(BehaviorUtils.getCentralElement(observationList.get(i).getVoxelPolies())),
+        minF,
+        maxF,
+        nBins
     );
   }
 
+  private double[] timeArray() {
+    return observations.keySet().stream().mapToDouble(Double::doubleValue).toArray();
+  }
+
+  public Grid<Boolean> getAveragePosture(int n) {
+    return getAveragePostureMask(n).toGrid();
+  }
+
+  public BooleanGrid getAveragePostureMask(int n) {
+    List<BooleanGrid> postures = new ArrayList<>(observations.size());
+    for (Observation observation : observations.values()) {
+      postures.add(BehaviorUtils.computePostureMask(
+          observation.getVoxelPolies().values().stream()
+              .filter(Objects::nonNull)
+              .collect(Collectors.toList()),
+          n
+      ));
+    }
+    return BehaviorUtils.computeAveragePostureMask(postures);
+  }
+
   public List<SortedMap<Domain, Double>> getFootprintsSpectra(int n, double minF, double maxF, int nBins) {
-    SortedMap<Double, Footprint> footprints = new TreeMap<>(
-        observations.entrySet().stream().collect(Collectors.toMap(
-            Map.Entry::getKey,
-            e -> BehaviorUtils.computeFootprint(
-                e.getValue().getVoxelPolies().values().stream()
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList()),
-                n
-            ))));
-    return IntStream.range(0, n)
-        .mapToObj(i -> BehaviorUtils.computeQuantizedSpectrum(
-            new TreeMap<>(
-                footprints.entrySet().stream().collect(Collectors.toMap(
-                    Map.Entry::getKey,
-                    e -> e.getValue().getMask()[i] ? 1d : 0d
-                ))),
-            minF, maxF, nBins
-        ))
-        .collect(Collectors.toList());
-  }
-}
\ No newline at end of file
+    List<Observation> observationList = new ArrayList<>(observations.values());
+    return BehaviorUtils.computeFootprintsSpectra(
+        timeArray(),
+        i -> BehaviorUtils.computeFootprint(
+            observationList.get(i).getVoxelPolies().values().stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()),
+            n
+        ),
+        minF,
+        maxF,
+        nBins,
+        n
+    );
+  }
+}
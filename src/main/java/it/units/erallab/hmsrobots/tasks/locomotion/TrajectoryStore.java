@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.tasks.locomotion;
+
+import it.units.erallab.hmsrobots.behavior.BehaviorUtils;
+import it.units.erallab.hmsrobots.behavior.Footprint;
+import it.units.erallab.hmsrobots.behavior.Gait;
+import it.units.erallab.hmsrobots.core.geometry.Point2;
+import it.units.erallab.hmsrobots.core.snapshots.VoxelPoly;
+import it.units.erallab.hmsrobots.util.Domain;
+import it.units.erallab.hmsrobots.util.Grid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * An append-only file of locomotion trajectories, indexed by episode id, that is read through memory mapping.
+ * Each episode is stored as a header (id, grid size, number of steps) followed by one fixed-width record per step:
+ * time, terrain height and computation time, then, for each grid cell, the 4 vertexes, angle, linear velocity, area
+ * ratio, area ratio energy, last applied force and control energy of the voxel, and finally one flags byte per cell
+ * (presence and touching ground). Malfunctions are not stored.
+ * {@link Episode} computes the same descriptors of {@link Outcome} directly on the mapped records.
+ *
+ * @author eric
+ */
+public class TrajectoryStore implements Closeable {
+
+  private static final int MAGIC = 0x48545253; // HTRS
+  private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+  private static final int N_OF_VERTEXES = 4;
+  private static final int STEP_VALUES = 3;
+  private static final int VOXEL_VALUES = 2 * N_OF_VERTEXES + 7;
+  private static final int ANGLE = 2 * N_OF_VERTEXES;
+  private static final int VELOCITY_X = ANGLE + 1;
+  private static final int VELOCITY_Y = ANGLE + 2;
+  private static final int AREA_RATIO = ANGLE + 3;
+  private static final int AREA_RATIO_ENERGY = ANGLE + 4;
+  private static final int LAST_APPLIED_FORCE = ANGLE + 5;
+  private static final int CONTROL_ENERGY = ANGLE + 6;
+  private static final byte PRESENT_FLAG = 1;
+  private static final byte TOUCHING_FLAG = 2;
+
+  public static class Episode {
+    private final FileChannel channel;
+    private final long offset;
+    private final String id;
+    private final int w;
+    private final int h;
+    private final int nOfSteps;
+    private final int recordSize;
+    private volatile MappedByteBuffer buffer;
+
+    private Episode(FileChannel channel, long offset, String id, int w, int h, int nOfSteps) {
+      this.channel = channel;
+      this.offset = offset;
+      this.id = id;
+      this.w = w;
+      this.h = h;
+      this.nOfSteps = nOfSteps;
+      recordSize = recordSize(w, h);
+    }
+
+    private ByteBuffer buffer() {
+      MappedByteBuffer localBuffer = buffer;
+      if (localBuffer == null) {
+        synchronized (this) {
+          if (buffer == null) {
+            try {
+              buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) nOfSteps * (long) recordSize);
+              buffer.order(ORDER);
+            } catch (IOException e) {
+              throw new IllegalStateException(String.format("Cannot map episode %s due to %s", id, e), e);
+            }
+          }
+          localBuffer = buffer;
+        }
+      }
+      return localBuffer;
+    }
+
+    private int valueIndex(int step, int x, int y, int value) {
+      return step * recordSize + Double.BYTES * (STEP_VALUES + (y * w + x) * VOXEL_VALUES + value);
+    }
+
+    private int flagsIndex(int step, int x, int y) {
+      return step * recordSize + Double.BYTES * (STEP_VALUES + w * h * VOXEL_VALUES) + y * w + x;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public int getW() {
+      return w;
+    }
+
+    public int getH() {
+      return h;
+    }
+
+    public int nOfSteps() {
+      return nOfSteps;
+    }
+
+    public double getT(int step) {
+      return buffer().getDouble(step * recordSize);
+    }
+
+    public double getTerrainHeight(int step) {
+      return buffer().getDouble(step * recordSize + Double.BYTES);
+    }
+
+    public double getComputationTime(int step) {
+      return buffer().getDouble(step * recordSize + 2 * Double.BYTES);
+    }
+
+    public boolean isPresent(int step, int x, int y) {
+      return (buffer().get(flagsIndex(step, x, y)) & PRESENT_FLAG) != 0;
+    }
+
+    public boolean isTouchingGround(int step, int x, int y) {
+      return (buffer().get(flagsIndex(step, x, y)) & TOUCHING_FLAG) != 0;
+    }
+
+    public double getVertexX(int step, int x, int y, int vertex) {
+      return buffer().getDouble(valueIndex(step, x, y, 2 * vertex));
+    }
+
+    public double getVertexY(int step, int x, int y, int vertex) {
+      return buffer().getDouble(valueIndex(step, x, y, 2 * vertex + 1));
+    }
+
+    public double getCenterX(int step, int x, int y) {
+      double c = 0d;
+      for (int i = 0; i < N_OF_VERTEXES; i++) {
+        c = c + getVertexX(step, x, y, i);
+      }
+      return c / (double) N_OF_VERTEXES;
+    }
+
+    public double getCenterY(int step, int x, int y) {
+      double c = 0d;
+      for (int i = 0; i < N_OF_VERTEXES; i++) {
+        c = c + getVertexY(step, x, y, i);
+      }
+      return c / (double) N_OF_VERTEXES;
+    }
+
+    public double getAngle(int step, int x, int y) {
+      return buffer().getDouble(valueIndex(step, x, y, ANGLE));
+    }
+
+    public double getVelocityX(int step, int x, int y) {
+      return buffer().getDouble(valueIndex(step, x, y, VELOCITY_X));
+    }
+
+    public double getVelocityY(int step, int x, int y) {
+      return buffer().getDouble(valueIndex(step, x, y, VELOCITY_Y));
+    }
+
+    public VoxelPoly getVoxelPoly(int step, int x, int y) {
+      if (!isPresent(step, x, y)) {
+        return null;
+      }
+      List<Point2> vertexes = new ArrayList<>(N_OF_VERTEXES);
+      for (int i = 0; i < N_OF_VERTEXES; i++) {
+        vertexes.add(Point2.of(getVertexX(step, x, y, i), getVertexY(step, x, y, i)));
+      }
+      ByteBuffer b = buffer();
+      return new VoxelPoly(
+          vertexes,
+          b.getDouble(valueIndex(step, x, y, ANGLE)),
+          Point2.of(b.getDouble(valueIndex(step, x, y, VELOCITY_X)), b.getDouble(valueIndex(step, x, y, VELOCITY_Y))),
+          isTouchingGround(step, x, y),
+          b.getDouble(valueIndex(step, x, y, AREA_RATIO)),
+          b.getDouble(valueIndex(step, x, y, AREA_RATIO_ENERGY)),
+          b.getDouble(valueIndex(step, x, y, LAST_APPLIED_FORCE)),
+          b.getDouble(valueIndex(step, x, y, CONTROL_ENERGY))
+      );
+    }
+
+    public Grid<VoxelPoly> getVoxelPolies(int step) {
+      return Grid.create(w, h, (x, y) -> getVoxelPoly(step, x, y));
+    }
+
+    public Outcome toOutcome() {
+      Map<Double, Outcome.Observation> observations = new HashMap<>(nOfSteps);
+      for (int step = 0; step < nOfSteps; step++) {
+        observations.put(getT(step), new Outcome.Observation(
+            getVoxelPolies(step),
+            getTerrainHeight(step),
+            getComputationTime(step)
+        ));
+      }
+      return new Outcome(observations);
+    }
+
+    private double[] timeArray() {
+      double[] ts = new double[nOfSteps];
+      for (int step = 0; step < nOfSteps; step++) {
+        ts[step] = getT(step);
+      }
+      return ts;
+    }
+
+    private int[] centralCell() {
+      Grid<int[]> cells = Grid.create(w, h, (x, y) -> isPresent(0, x, y) ? new int[]{x, y} : null);
+      return BehaviorUtils.getCentralElement(cells);
+    }
+
+    private interface CellSignal {
+      double get(int step, int x, int y);
+    }
+
+    private SortedMap<Domain, Double> centralCellSpectrum(CellSignal cellSignal, double minF, double maxF, int nBins) {
+      int[] cell = centralCell();
+      return BehaviorUtils.computeQuantizedSpectrum(
+          timeArray(),
+          step -> cellSignal.get(step, cell[0], cell[1]),
+          minF,
+          maxF,
+          nBins
+      );
+    }
+
+    public SortedMap<Domain, Double> getCenterXPositionSpectrum(double minF, double maxF, int nBins) {
+      return centralCellSpectrum(this::getCenterX, minF, maxF, nBins);
+    }
+
+    public SortedMap<Domain, Double> getCenterYPositionSpectrum(double minF, double maxF, int nBins) {
+      return centralCellSpectrum(this::getCenterY, minF, maxF, nBins);
+    }
+
+    public SortedMap<Domain, Double> getCenterXVelocitySpectrum(double minF, double maxF, int nBins) {
+      return centralCellSpectrum(this::getVelocityX, minF, maxF, nBins);
+    }
+
+    public SortedMap<Domain, Double> getCenterYVelocitySpectrum(double minF, double maxF, int nBins) {
+      return centralCellSpectrum(this::getVelocityY, minF, maxF, nBins);
+    }
+
+    public SortedMap<Domain, Double> getCenterAngleSpectrum(double minF, double maxF, int nBins) {
+      return centralCellSpectrum(this::getAngle, minF, maxF, nBins);
+    }
+
+    public Footprint getFootprint(int step, int n) {
+      int nOfVoxels = 0;
+      for (int x = 0; x < w; x++) {
+        for (int y = 0; y < h; y++) {
+          nOfVoxels = nOfVoxels + (isPresent(step, x, y) ? 1 : 0);
+        }
+      }
+      double[] minXs = new double[nOfVoxels];
+      double[] maxXs = new double[nOfVoxels];
+      boolean[] touchings = new boolean[nOfVoxels];
+      int c = 0;
+      for (int y = 0; y < h; y++) {
+        for (int x = 0; x < w; x++) {
+          if (isPresent(step, x, y)) {
+            minXs[c] = Double.POSITIVE_INFINITY;
+            maxXs[c] = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < N_OF_VERTEXES; i++) {
+              minXs[c] = Math.min(minXs[c], getVertexX(step, x, y, i));
+              maxXs[c] = Math.max(maxXs[c], getVertexX(step, x, y, i));
+            }
+            touchings[c] = isTouchingGround(step, x, y);
+            c = c + 1;
+          }
+        }
+      }
+      return BehaviorUtils.computeFootprint(minXs, maxXs, touchings, n);
+    }
+
+    public SortedMap<Double, Footprint> getFootprints(int n) {
+      SortedMap<Double, Footprint> footprints = new TreeMap<>();
+      for (int step = 0; step < nOfSteps; step++) {
+        footprints.put(getT(step), getFootprint(step, n));
+      }
+      return footprints;
+    }
+
+    public List<SortedMap<Domain, Double>> getFootprintsSpectra(int n, double minF, double maxF, int nBins) {
+      return BehaviorUtils.computeFootprintsSpectra(timeArray(), step -> getFootprint(step, n), minF, maxF, nBins, n);
+    }
+
+    public Gait getMainGait(double interval, double longestInterval, int n) {
+      return BehaviorUtils.computeMainGait(interval, longestInterval, getFootprints(n));
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Episode{id=%s, w=%d, h=%d, nOfSteps=%d}", id, w, h, nOfSteps);
+    }
+  }
+
+  private final FileChannel channel;
+  private final Map<String, Episode> episodes;
+
+  public TrajectoryStore(Path path) throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    episodes = new LinkedHashMap<>();
+    if (channel.size() == 0) {
+      ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).order(ORDER).putInt(MAGIC);
+      header.flip();
+      write(header, 0);
+    } else {
+      scan();
+    }
+  }
+
+  private static int recordSize(int w, int h) {
+    return Double.BYTES * (STEP_VALUES + w * h * VOXEL_VALUES) + w * h;
+  }
+
+  private void scan() throws IOException {
+    ByteBuffer intBuffer = ByteBuffer.allocate(Integer.BYTES).order(ORDER);
+    if (readInt(intBuffer, 0) != MAGIC) {
+      throw new IOException("Not a trajectory store");
+    }
+    long size = channel.size();
+    long position = Integer.BYTES;
+    while (position < size) {
+      int idLength = readInt(intBuffer, position);
+      if (idLength < 0 || position + Integer.BYTES + idLength > size) {
+        throw new IOException(String.format("Truncated episode header at %d", position));
+      }
+      ByteBuffer idBuffer = ByteBuffer.allocate(idLength);
+      read(idBuffer, position + Integer.BYTES);
+      String id = new String(idBuffer.array(), StandardCharsets.UTF_8);
+      position = position + Integer.BYTES + idLength;
+      int w = readInt(intBuffer, position);
+      int h = readInt(intBuffer, position + Integer.BYTES);
+      int nOfSteps = readInt(intBuffer, position + 2 * Integer.BYTES);
+      if (w <= 0 || h <= 0 || nOfSteps < 0) {
+        throw new IOException(String.format("Wrong header of episode %s: w=%d, h=%d, nOfSteps=%d", id, w, h, nOfSteps));
+      }
+      position = position + 3 * Integer.BYTES;
+      long dataSize = (long) nOfSteps * (long) recordSize(w, h);
+      if (position + dataSize > size) {
+        throw new IOException(String.format(
+            "Truncated episode %s: %d bytes expected, %d available",
+            id,
+            dataSize,
+            size - position
+        ));
+      }
+      episodes.put(id, new Episode(channel, position, id, w, h, nOfSteps));
+      position = position + dataSize;
+    }
+  }
+
+  private int readInt(ByteBuffer intBuffer, long position) throws IOException {
+    intBuffer.clear();
+    read(intBuffer, position);
+    return intBuffer.getInt(0);
+  }
+
+  private void read(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int n = channel.read(buffer, position);
+      if (n < 0) {
+        throw new IOException(String.format("Unexpected end of file at %d", position));
+      }
+      position = position + n;
+    }
+  }
+
+  private long write(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position = position + channel.write(buffer, position);
+    }
+    return position;
+  }
+
+  public synchronized Episode add(String id, Outcome outcome) throws IOException {
+    if (episodes.containsKey(id)) {
+      throw new IllegalArgumentException(String.format("Episode %s already stored", id));
+    }
+    SortedMap<Double, Outcome.Observation> observations = outcome.getObservations();
+    Grid<VoxelPoly> firstPolies = observations.get(observations.firstKey()).getVoxelPolies();
+    int w = firstPolies.getW();
+    int h = firstPolies.getH();
+    for (Outcome.Observation observation : observations.values()) {
+      Grid<VoxelPoly> polies = observation.getVoxelPolies();
+      if (polies.getW() != w || polies.getH() != h) {
+        throw new IllegalArgumentException("Cannot store an outcome whose robot changes size");
+      }
+      for (VoxelPoly poly : polies.values()) {
+        if (poly != null && poly.getVertexes().length != N_OF_VERTEXES) {
+          throw new IllegalArgumentException(String.format("Cannot store a voxel with %d vertexes", poly.getVertexes().length));
+        }
+      }
+    }
+    int recordSize = recordSize(w, h);
+    byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer header = ByteBuffer.allocate(4 * Integer.BYTES + idBytes.length).order(ORDER);
+    header.putInt(idBytes.length).put(idBytes).putInt(w).putInt(h).putInt(observations.size());
+    header.flip();
+    long position = channel.size();
+    position = write(header, position);
+    long dataPosition = position;
+    ByteBuffer record = ByteBuffer.allocate(recordSize).order(ORDER);
+    for (Map.Entry<Double, Outcome.Observation> entry : observations.entrySet()) {
+      Grid<VoxelPoly> polies = entry.getValue().getVoxelPolies();
+      record.clear();
+      record.putDouble(entry.getKey());
+      record.putDouble(entry.getValue().getTerrainHeight());
+      record.putDouble(entry.getValue().getComputationTime());
+      for (int y = 0; y < h; y++) {
+        for (int x = 0; x < w; x++) {
+          VoxelPoly poly = polies.get(x, y);
+          if (poly == null) {
+            for (int i = 0; i < VOXEL_VALUES; i++) {
+              record.putDouble(0d);
+            }
+            continue;
+          }
+          for (Point2 vertex : poly.getVertexes()) {
+            record.putDouble(vertex.x);
+            record.putDouble(vertex.y);
+          }
+          record.putDouble(poly.getAngle());
+          record.putDouble(poly.getLinearVelocity().x);
+          record.putDouble(poly.getLinearVelocity().y);
+          record.putDouble(poly.getAreaRatio());
+          record.putDouble(poly.getAreaRatioEnergy());
+          record.putDouble(poly.getLastAppliedForce());
+          record.putDouble(poly.getControlEnergy());
+        }
+      }
+      for (int y = 0; y < h; y++) {
+        for (int x = 0; x < w; x++) {
+          VoxelPoly poly = polies.get(x, y);
+          record.put((byte) (poly == null ? 0 : (PRESENT_FLAG | (poly.isTouchingGround() ? TOUCHING_FLAG : 0))));
+        }
+      }
+      record.flip();
+      position = write(record, position);
+    }
+    Episode episode = new Episode(channel, dataPosition, id, w, h, observations.size());
+    episodes.put(id, episode);
+    return episode;
+  }
+
+  public synchronized Episode get(String id) {
+    return episodes.get(id);
+  }
+
+  public synchronized Set<String> ids() {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(episodes.keySet()));
+  }
+
+  public synchronized Collection<Episode> episodes() {
+    return List.copyOf(episodes.values());
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    channel.close();
+  }
+
+}
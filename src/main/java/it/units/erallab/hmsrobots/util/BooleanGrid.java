@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.util;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Grid} of {@code boolean}s stored as a row-major bitset. Reading outside the grid gives {@code false}.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class BooleanGrid implements Iterable<Grid.Entry<Boolean>>, Serializable {
+
+  @JsonProperty
+  private final int w;
+  @JsonProperty
+  private final int h;
+  @JsonProperty
+  private final long[] words;
+
+  @JsonCreator
+  public BooleanGrid(
+      @JsonProperty("w") int w,
+      @JsonProperty("h") int h,
+      @JsonProperty("words") long[] words
+  ) {
+    this.w = w;
+    this.h = h;
+    this.words = new long[nOfWords(w * h)];
+    if (words != null) {
+      System.arraycopy(words, 0, this.words, 0, Math.min(words.length, this.words.length));
+    }
+  }
+
+  public BooleanGrid(int w, int h) {
+    this(w, h, null);
+  }
+
+  private static int nOfWords(int nOfBits) {
+    return (nOfBits + Long.SIZE - 1) / Long.SIZE;
+  }
+
+  public static BooleanGrid create(int w, int h, boolean b) {
+    BooleanGrid grid = new BooleanGrid(w, h);
+    if (b) {
+      for (int i = 0; i < w * h; i++) {
+        grid.set(i, true);
+      }
+    }
+    return grid;
+  }
+
+  public static BooleanGrid create(int w, int h, BiPredicate<Integer, Integer> fillerFunction) {
+    BooleanGrid grid = new BooleanGrid(w, h);
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        if (fillerFunction.test(x, y)) {
+          grid.set(x, y, true);
+        }
+      }
+    }
+    return grid;
+  }
+
+  public static <T> BooleanGrid create(Grid<T> source, Predicate<T> predicate) {
+    BooleanGrid grid = new BooleanGrid(source.getW(), source.getH());
+    for (Grid.Entry<T> entry : source) {
+      if (predicate.test(entry.getValue())) {
+        grid.set(entry.getX(), entry.getY(), true);
+      }
+    }
+    return grid;
+  }
+
+  public static BooleanGrid create(Grid<Boolean> source) {
+    return create(source, b -> b != null && b);
+  }
+
+  public static BooleanGrid copy(BooleanGrid other) {
+    return new BooleanGrid(other.w, other.h, other.words);
+  }
+
+  public Grid<Boolean> toGrid() {
+    return Grid.create(w, h, this::get);
+  }
+
+  public boolean get(int x, int y) {
+    if (x < 0 || x >= w || y < 0 || y >= h) {
+      return false;
+    }
+    return get(y * w + x);
+  }
+
+  public void set(int x, int y, boolean b) {
+    if (x < 0 || x >= w || y < 0 || y >= h) {
+      throw new IllegalArgumentException(String.format(
+          "Cannot set element at %d,%d on a %dx%d grid",
+          x, y, w, h
+      ));
+    }
+    set(y * w + x, b);
+  }
+
+  private boolean get(int i) {
+    return (words[i / Long.SIZE] & (1L << (i % Long.SIZE))) != 0;
+  }
+
+  private void set(int i, boolean b) {
+    if (b) {
+      words[i / Long.SIZE] = words[i / Long.SIZE] | (1L << (i % Long.SIZE));
+    } else {
+      words[i / Long.SIZE] = words[i / Long.SIZE] & ~(1L << (i % Long.SIZE));
+    }
+  }
+
+  /**
+   * Sets to {@code b} all the cells in the rectangle with the given (inclusive) corners, clipped to the grid.
+   */
+  public void fill(int minX, int minY, int maxX, int maxY, boolean b) {
+    minX = Math.max(minX, 0);
+    minY = Math.max(minY, 0);
+    maxX = Math.min(maxX, w - 1);
+    maxY = Math.min(maxY, h - 1);
+    if (minX > maxX) {
+      return;
+    }
+    for (int y = minY; y <= maxY; y++) {
+      int from = y * w + minX;
+      int to = y * w + maxX;
+      int fromWord = from / Long.SIZE;
+      int toWord = to / Long.SIZE;
+      for (int i = fromWord; i <= toWord; i++) {
+        long mask = -1L;
+        if (i == fromWord) {
+          mask = mask & (-1L << (from % Long.SIZE));
+        }
+        if (i == toWord) {
+          mask = mask & (-1L >>> (Long.SIZE - 1 - to % Long.SIZE));
+        }
+        words[i] = b ? (words[i] | mask) : (words[i] & ~mask);
+      }
+    }
+  }
+
+  /**
+   * Increments the elements of {@code counts} (one per cell, row-major) corresponding to the set cells.
+   */
+  public void addTo(int[] counts) {
+    for (int i = 0; i < words.length; i++) {
+      long word = words[i];
+      while (word != 0) {
+        counts[i * Long.SIZE + Long.numberOfTrailingZeros(word)]++;
+        word = word & (word - 1);
+      }
+    }
+  }
+
+  public int hammingDistance(BooleanGrid other) {
+    if (w != other.w || h != other.h) {
+      throw new IllegalArgumentException(String.format(
+          "Cannot compare grids with different sizes: %dx%d vs. %dx%d",
+          w, h, other.w, other.h
+      ));
+    }
+    int d = 0;
+    for (int i = 0; i < words.length; i++) {
+      d = d + Long.bitCount(words[i] ^ other.words[i]);
+    }
+    return d;
+  }
+
+  public int getW() {
+    return w;
+  }
+
+  public int getH() {
+    return h;
+  }
+
+  public int count() {
+    int count = 0;
+    for (long word : words) {
+      count = count + Long.bitCount(word);
+    }
+    return count;
+  }
+
+  public boolean[][] rows() {
+    boolean[][] rows = new boolean[h][w];
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        rows[y][x] = get(x, y);
+      }
+    }
+    return rows;
+  }
+
+  public boolean[][] columns() {
+    boolean[][] columns = new boolean[w][h];
+    for (int x = 0; x < w; x++) {
+      for (int y = 0; y < h; y++) {
+        columns[x][y] = get(x, y);
+      }
+    }
+    return columns;
+  }
+
+  @Override
+  public Iterator<Grid.Entry<Boolean>> iterator() {
+    return new Iterator<>() {
+      private int c = 0;
+
+      @Override
+      public boolean hasNext() {
+        return c < w * h;
+      }
+
+      @Override
+      public Grid.Entry<Boolean> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Grid.Entry<Boolean> entry = new Grid.Entry<>(c % w, c / w, get(c));
+        c = c + 1;
+        return entry;
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    BooleanGrid that = (BooleanGrid) o;
+    return w == that.w && h == that.h && Arrays.equals(words, that.words);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * w + h) + Arrays.hashCode(words);
+  }
+
+  @Override
+  public String toString() {
+    return Grid.toString(toGrid(), (Predicate<Boolean>) b -> b);
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.util;
+
+import it.units.erallab.hmsrobots.core.controllers.Controller;
+import it.units.erallab.hmsrobots.core.controllers.TimedRealFunction;
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.core.objects.Voxel;
+import it.units.erallab.hmsrobots.core.sensors.Sensor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded LRU cache of deserialized objects, keyed by the SHA-256 digest of the serialized string, the mode, and the
+ * class. The cached objects act as prototypes and are never returned: each call returns a copy of the prototype.
+ * Concurrent requests of the same missing key wait for a single deserialization.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class DeserializationCache {
+
+  private static final class Key {
+    private final byte[] digest;
+    private final SerializationUtils.Mode mode;
+    private final Class<?> tClass;
+    private final int hash;
+
+    private Key(byte[] digest, SerializationUtils.Mode mode, Class<?> tClass) {
+      this.digest = digest;
+      this.mode = mode;
+      this.tClass = tClass;
+      hash = 31 * (31 * Arrays.hashCode(digest) + mode.hashCode()) + tClass.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return mode == key.mode && tClass.equals(key.tClass) && Arrays.equals(digest, key.digest);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private final int capacity;
+  private final UnaryOperator<Object> copier;
+  private final Map<Key, CompletableFuture<Object>> prototypes;
+  private long hits;
+  private long misses;
+
+  public DeserializationCache(int capacity, UnaryOperator<Object> copier) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException(String.format("Capacity should be at least 1: %d found", capacity));
+    }
+    this.capacity = capacity;
+    this.copier = copier;
+    prototypes = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<Object>> eldest) {
+        return size() > DeserializationCache.this.capacity;
+      }
+    };
+  }
+
+  public DeserializationCache(int capacity) {
+    this(capacity, DeserializationCache::copy);
+  }
+
+  @SuppressWarnings("unchecked")
+  public static Object copy(Object o) {
+    if (o == null || o instanceof Number || o instanceof String || o instanceof Boolean || o instanceof Enum) {
+      return o;
+    }
+    if (o instanceof Robot) {
+      return ((Robot<?>) o).copy();
+    }
+    if (o instanceof Controller) {
+      return ((Controller<?>) o).copy();
+    }
+    if (o instanceof Voxel) {
+      return ((Voxel) o).copy();
+    }
+    if (o instanceof Sensor) {
+      return ((Sensor) o).copy();
+    }
+    if (o instanceof TimedRealFunction) {
+      return ((TimedRealFunction) o).copy();
+    }
+    if (o instanceof Grid) {
+      return Grid.copy((Grid<Object>) o, DeserializationCache::copy);
+    }
+    return SerializationUtils.clone(o);
+  }
+
+  public <T> T deserialize(String string, Class<T> tClass) {
+    return deserialize(string, tClass, SerializationUtils.DEFAULT_SERIALIZATION_MODE);
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> T deserialize(String string, Class<T> tClass, SerializationUtils.Mode mode) {
+    Key key = new Key(digest(string), mode, tClass);
+    CompletableFuture<Object> future;
+    boolean owner = false;
+    synchronized (prototypes) {
+      future = prototypes.get(key);
+      if (future != null) {
+        hits = hits + 1;
+      } else {
+        misses = misses + 1;
+        future = new CompletableFuture<>();
+        prototypes.put(key, future);
+        owner = true;
+      }
+    }
+    if (owner) {
+      //only the thread which put the future parses the string, the others wait for it
+      Object prototype;
+      try {
+        prototype = SerializationUtils.deserialize(string, tClass, mode);
+      } catch (RuntimeException e) {
+        discard(key, future);
+        future.completeExceptionally(e);
+        throw e;
+      }
+      if (prototype == null) {
+        discard(key, future);
+      }
+      future.complete(prototype);
+    }
+    Object prototype = future.join();
+    return prototype == null ? null : (T) copier.apply(prototype);
+  }
+
+  private void discard(Key key, CompletableFuture<Object> future) {
+    synchronized (prototypes) {
+      prototypes.remove(key, future);
+    }
+  }
+
+  public void clear() {
+    synchronized (prototypes) {
+      prototypes.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (prototypes) {
+      return prototypes.size();
+    }
+  }
+
+  public long getHits() {
+    synchronized (prototypes) {
+      return hits;
+    }
+  }
+
+  public long getMisses() {
+    synchronized (prototypes) {
+      return misses;
+    }
+  }
+
+  private static byte[] digest(String string) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(string.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("DeserializationCache{capacity=%d, size=%d, hits=%d, misses=%d}", capacity, size(), getHits(), getMisses());
+  }
+}
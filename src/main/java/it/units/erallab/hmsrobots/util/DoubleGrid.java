@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.util;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A {@link Grid} of {@code double}s stored in a row-major array. Reading outside the grid gives {@link Double#NaN}.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class DoubleGrid implements Iterable<Grid.Entry<Double>>, Serializable {
+
+  @JsonProperty
+  private final int w;
+  @JsonProperty
+  private final int h;
+  @JsonProperty
+  private final double[] values;
+
+  @JsonCreator
+  public DoubleGrid(
+      @JsonProperty("w") int w,
+      @JsonProperty("h") int h,
+      @JsonProperty("values") double[] values
+  ) {
+    this.w = w;
+    this.h = h;
+    this.values = new double[w * h];
+    if (values != null) {
+      System.arraycopy(values, 0, this.values, 0, Math.min(values.length, this.values.length));
+    }
+  }
+
+  public DoubleGrid(int w, int h) {
+    this(w, h, null);
+  }
+
+  public static DoubleGrid create(int w, int h, double v) {
+    DoubleGrid grid = new DoubleGrid(w, h);
+    Arrays.fill(grid.values, v);
+    return grid;
+  }
+
+  public static DoubleGrid create(int w, int h, ToDoubleBiFunction<Integer, Integer> fillerFunction) {
+    DoubleGrid grid = new DoubleGrid(w, h);
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        grid.values[y * w + x] = fillerFunction.applyAsDouble(x, y);
+      }
+    }
+    return grid;
+  }
+
+  public static <T> DoubleGrid create(Grid<T> source, ToDoubleFunction<T> transformerFunction) {
+    DoubleGrid grid = new DoubleGrid(source.getW(), source.getH());
+    for (Grid.Entry<T> entry : source) {
+      grid.set(entry.getX(), entry.getY(), transformerFunction.applyAsDouble(entry.getValue()));
+    }
+    return grid;
+  }
+
+  public static DoubleGrid create(Grid<Double> source) {
+    return create(source, v -> v == null ? Double.NaN : v);
+  }
+
+  public static DoubleGrid copy(DoubleGrid other) {
+    return new DoubleGrid(other.w, other.h, other.values);
+  }
+
+  public Grid<Double> toGrid() {
+    return Grid.create(w, h, this::get);
+  }
+
+  public double get(int x, int y) {
+    if (x < 0 || x >= w || y < 0 || y >= h) {
+      return Double.NaN;
+    }
+    return values[y * w + x];
+  }
+
+  public void set(int x, int y, double v) {
+    if (x < 0 || x >= w || y < 0 || y >= h) {
+      throw new IllegalArgumentException(String.format(
+          "Cannot set element at %d,%d on a %dx%d grid",
+          x, y, w, h
+      ));
+    }
+    values[y * w + x] = v;
+  }
+
+  public int getW() {
+    return w;
+  }
+
+  public int getH() {
+    return h;
+  }
+
+  public double[] values() {
+    return values;
+  }
+
+  public double[][] rows() {
+    double[][] rows = new double[h][];
+    for (int y = 0; y < h; y++) {
+      rows[y] = Arrays.copyOfRange(values, y * w, (y + 1) * w);
+    }
+    return rows;
+  }
+
+  public double[][] columns() {
+    double[][] columns = new double[w][h];
+    for (int x = 0; x < w; x++) {
+      for (int y = 0; y < h; y++) {
+        columns[x][y] = values[y * w + x];
+      }
+    }
+    return columns;
+  }
+
+  @Override
+  public Iterator<Grid.Entry<Double>> iterator() {
+    return new Iterator<>() {
+      private int c = 0;
+
+      @Override
+      public boolean hasNext() {
+        return c < w * h;
+      }
+
+      @Override
+      public Grid.Entry<Double> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Grid.Entry<Double> entry = new Grid.Entry<>(c % w, c / w, values[c]);
+        c = c + 1;
+        return entry;
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    DoubleGrid that = (DoubleGrid) o;
+    return w == that.w && h == that.h && Arrays.equals(values, that.values);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * w + h) + Arrays.hashCode(values);
+  }
+
+  @Override
+  public String toString() {
+    return toGrid().toString();
+  }
+}
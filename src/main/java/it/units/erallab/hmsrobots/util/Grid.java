@@ -210,6 +210,17 @@ public class Grid<T> implements Iterable<Grid.Entry<T>>, Serializable {
     return grid;
   }
 
+  public static <K> Grid<K> copy(Grid<K> other, Function<? super K, ? extends K> copier) {
+    Grid<K> grid = Grid.create(other);
+    for (int x = 0; x < grid.w; x++) {
+      for (int y = 0; y < grid.h; y++) {
+        K k = other.get(x, y);
+        grid.set(x, y, k == null ? null : copier.apply(k));
+      }
+    }
+    return grid;
+  }
+
   @Override
   public Iterator<Entry<T>> iterator() {
     return new GridIterator<>(this);
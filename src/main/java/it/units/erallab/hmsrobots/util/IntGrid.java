@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.util;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * A {@link Grid} of {@code int}s stored in a row-major array. Reading outside the grid gives {@code 0}.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class IntGrid implements Iterable<Grid.Entry<Integer>>, Serializable {
+
+  @JsonProperty
+  private final int w;
+  @JsonProperty
+  private final int h;
+  @JsonProperty
+  private final int[] values;
+
+  @JsonCreator
+  public IntGrid(
+      @JsonProperty("w") int w,
+      @JsonProperty("h") int h,
+      @JsonProperty("values") int[] values
+  ) {
+    this.w = w;
+    this.h = h;
+    this.values = new int[w * h];
+    if (values != null) {
+      System.arraycopy(values, 0, this.values, 0, Math.min(values.length, this.values.length));
+    }
+  }
+
+  public IntGrid(int w, int h) {
+    this(w, h, null);
+  }
+
+  public static IntGrid create(int w, int h, int v) {
+    IntGrid grid = new IntGrid(w, h);
+    Arrays.fill(grid.values, v);
+    return grid;
+  }
+
+  public static IntGrid create(int w, int h, ToIntBiFunction<Integer, Integer> fillerFunction) {
+    IntGrid grid = new IntGrid(w, h);
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        grid.values[y * w + x] = fillerFunction.applyAsInt(x, y);
+      }
+    }
+    return grid;
+  }
+
+  public static <T> IntGrid create(Grid<T> source, ToIntFunction<T> transformerFunction) {
+    IntGrid grid = new IntGrid(source.getW(), source.getH());
+    for (Grid.Entry<T> entry : source) {
+      grid.set(entry.getX(), entry.getY(), transformerFunction.applyAsInt(entry.getValue()));
+    }
+    return grid;
+  }
+
+  public static IntGrid create(Grid<Integer> source) {
+    return create(source, v -> v == null ? 0 : v);
+  }
+
+  public static IntGrid copy(IntGrid other) {
+    return new IntGrid(other.w, other.h, other.values);
+  }
+
+  public Grid<Integer> toGrid() {
+    return Grid.create(w, h, this::get);
+  }
+
+  public int get(int x, int y) {
+    if (x < 0 || x >= w || y < 0 || y >= h) {
+      return 0;
+    }
+    return values[y * w + x];
+  }
+
+  public void set(int x, int y, int v) {
+    if (x < 0 || x >= w || y < 0 || y >= h) {
+      throw new IllegalArgumentException(String.format(
+          "Cannot set element at %d,%d on a %dx%d grid",
+          x, y, w, h
+      ));
+    }
+    values[y * w + x] = v;
+  }
+
+  public int getW() {
+    return w;
+  }
+
+  public int getH() {
+    return h;
+  }
+
+  public int[] values() {
+    return values;
+  }
+
+  public int[][] rows() {
+    int[][] rows = new int[h][];
+    for (int y = 0; y < h; y++) {
+      rows[y] = Arrays.copyOfRange(values, y * w, (y + 1) * w);
+    }
+    return rows;
+  }
+
+  public int[][] columns() {
+    int[][] columns = new int[w][h];
+    for (int x = 0; x < w; x++) {
+      for (int y = 0; y < h; y++) {
+        columns[x][y] = values[y * w + x];
+      }
+    }
+    return columns;
+  }
+
+  @Override
+  public Iterator<Grid.Entry<Integer>> iterator() {
+    return new Iterator<>() {
+      private int c = 0;
+
+      @Override
+      public boolean hasNext() {
+        return c < w * h;
+      }
+
+      @Override
+      public Grid.Entry<Integer> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        Grid.Entry<Integer> entry = new Grid.Entry<>(c % w, c / w, values[c]);
+        c = c + 1;
+        return entry;
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    IntGrid that = (IntGrid) o;
+    return w == that.w && h == that.h && Arrays.equals(values, that.values);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * w + h) + Arrays.hashCode(values);
+  }
+
+  @Override
+  public String toString() {
+    return toGrid().toString();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.util;
+
+import java.util.SplittableRandom;
+
+/**
+ * Utilities for building reproducible streams of random numbers. A stream is a {@link SplittableRandom}, which,
+ * differently from {@link java.util.Random}, does not synchronize on each draw; streams for different components are
+ * derived from a single seed (e.g., the one of an episode) and a sequence of keys identifying the component (e.g., the
+ * index of a voxel and of one of its sensors), so that they are independent of each other and do not depend on the
+ * order in which components are built or run.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class RandomStreams {
+
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private RandomStreams() {
+  }
+
+  /**
+   * Returns the seed of the stream identified by {@code keys} within the stream with the given {@code seed}.
+   */
+  public static long seed(long seed, long... keys) {
+    long derived = mix(seed);
+    for (long key : keys) {
+      derived = mix(derived ^ mix(key + GOLDEN_GAMMA));
+    }
+    return derived;
+  }
+
+  public static SplittableRandom stream(long seed, long... keys) {
+    return new SplittableRandom(seed(seed, keys));
+  }
+
+  /**
+   * Returns a normally distributed value with mean 0 and standard deviation 1, computed with the polar method.
+   */
+  public static double nextGaussian(SplittableRandom random) {
+    double v1;
+    double v2;
+    double s;
+    do {
+      v1 = 2d * random.nextDouble() - 1d;
+      v2 = 2d * random.nextDouble() - 1d;
+      s = v1 * v1 + v2 * v2;
+    } while (s >= 1d || s == 0d);
+    return v1 * Math.sqrt(-2d * Math.log(s) / s);
+  }
+
+  // variant 13 of the 64 bits finalizer of MurmurHash3, as in SplitMix64
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+}
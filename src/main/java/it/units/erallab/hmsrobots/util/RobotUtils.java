@@ -96,7 +96,7 @@ public class RobotUtils {
         public Robot<?> apply(Robot<?> robot) {
           return new Robot<>(
               ((Robot<SensingVoxel>) robot).getController(),
-              Grid.create(SerializationUtils.clone((Grid<SensingVoxel>) robot.getVoxels()), v -> v == null ? null : new BreakableVoxel(
+              Grid.create(Grid.copy((Grid<SensingVoxel>) robot.getVoxels(), SensingVoxel::copy), v -> v == null ? null : new BreakableVoxel(
                   v.getSensors(),
                   random.nextInt(),
                   Map.of(
@@ -126,7 +126,7 @@ public class RobotUtils {
         public Robot<?> apply(Robot<?> robot) {
           return new Robot<>(
               ((Robot<SensingVoxel>) robot).getController(),
-              Grid.create(SerializationUtils.clone((Grid<SensingVoxel>) robot.getVoxels()), v -> v == null ? null : random.nextDouble() > ratio ? v : new BreakableVoxel(
+              Grid.create(Grid.copy((Grid<SensingVoxel>) robot.getVoxels(), SensingVoxel::copy), v -> v == null ? null : random.nextDouble() > ratio ? v : new BreakableVoxel(
                   v.getSensors(),
                   random.nextInt(),
                   Map.of(BreakableVoxel.ComponentType.ACTUATOR, Set.of(BreakableVoxel.MalfunctionType.FROZEN)),
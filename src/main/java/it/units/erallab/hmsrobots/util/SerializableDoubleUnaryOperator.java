@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.util;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A {@link SerializableFunction} on doubles which can also be applied without boxing, through
+ * {@link #applyAsDouble(double)}.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+@FunctionalInterface
+public interface SerializableDoubleUnaryOperator extends SerializableFunction<Double, Double>, DoubleUnaryOperator {
+
+  @Override
+  default Double apply(Double x) {
+    return applyAsDouble(x);
+  }
+
+}
@@ -5,11 +5,23 @@ import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
 import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.deser.std.PrimitiveArrayDeserializers;
 import com.fasterxml.jackson.databind.jsontype.TypeDeserializer;
 import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -23,13 +35,15 @@ public class SerializationUtils {
   private SerializationUtils() {
   }
 
-  public enum Mode {JAVA, JSON, PRETTY_JSON, GZIPPED_JAVA, GZIPPED_JSON}
+  public enum Mode {JAVA, JSON, PRETTY_JSON, GZIPPED_JAVA, GZIPPED_JSON, BINARY}
 
   private static final Logger L = Logger.getLogger(Utils.class.getName());
-  private static final Mode DEFAULT_SERIALIZATION_MODE = Mode.GZIPPED_JSON;
+  static final Mode DEFAULT_SERIALIZATION_MODE = Mode.GZIPPED_JSON;
   private static final Mode DEFAULT_CLONE_MODE = Mode.JAVA;
+  private static final int BUFFER_SIZE = 8192;
   private static final ObjectMapper OM;
   private static final ObjectMapper PRETTY_OM;
+  private static final ObjectMapper BINARY_OM;
 
   static {
     OM = new ObjectMapper();
@@ -41,6 +55,117 @@ public class SerializationUtils {
     PRETTY_OM.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
     PRETTY_OM.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.NONE);
     PRETTY_OM.setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.NONE);
+    //smile with raw (not 7-bit) binaries, where double[] are written as little-endian binaries
+    SmileFactory smileFactory = new SmileFactory();
+    smileFactory.disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT);
+    BINARY_OM = new ObjectMapper(smileFactory);
+    BINARY_OM.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+    BINARY_OM.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.NONE);
+    BINARY_OM.setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.NONE);
+    SimpleModule module = new SimpleModule();
+    module.addSerializer(double[].class, new DoubleArrayBinarySerializer());
+    module.addDeserializer(double[].class, new DoubleArrayBinaryDeserializer());
+    BINARY_OM.registerModule(module);
+    //streams are owned by callers
+    for (ObjectMapper om : new ObjectMapper[]{OM, PRETTY_OM, BINARY_OM}) {
+      om.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      om.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+  }
+
+  private static class DoubleArrayBinarySerializer extends JsonSerializer<double[]> {
+    @Override
+    public void serialize(double[] values, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(values.length * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.asDoubleBuffer().put(values);
+      jsonGenerator.writeBinary(buffer.array());
+    }
+
+    @Override
+    public void serializeWithType(double[] values, JsonGenerator jsonGenerator, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+      WritableTypeId typeId = typeSer.writeTypePrefix(jsonGenerator, typeSer.typeId(values, JsonToken.VALUE_EMBEDDED_OBJECT));
+      serialize(values, jsonGenerator, serializers);
+      typeSer.writeTypeSuffix(jsonGenerator, typeId);
+    }
+  }
+
+  private static class DoubleArrayBinaryDeserializer extends JsonDeserializer<double[]> {
+    @Override
+    @SuppressWarnings("unchecked")
+    public double[] deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+      if (jsonParser.currentToken() == JsonToken.START_ARRAY) {
+        return ((JsonDeserializer<double[]>) PrimitiveArrayDeserializers.forType(Double.TYPE)).deserialize(jsonParser, deserializationContext);
+      }
+      byte[] bytes = jsonParser.getBinaryValue();
+      double[] values = new double[bytes.length / Double.BYTES];
+      ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values);
+      return values;
+    }
+
+    @Override
+    public Object deserializeWithType(JsonParser jsonParser, DeserializationContext deserializationContext, TypeDeserializer typeDeserializer) throws IOException {
+      return typeDeserializer.deserializeTypedFromAny(jsonParser, deserializationContext);
+    }
+  }
+
+  private static class Base64StringInputStream extends InputStream {
+    private static final int CHUNK_SIZE = 4 * 2048;
+    private final String string;
+    private final byte[] encoded;
+    private final byte[] decoded;
+    private int stringIndex;
+    private int decodedIndex;
+    private int decodedLength;
+
+    private Base64StringInputStream(String string) {
+      this.string = string;
+      encoded = new byte[CHUNK_SIZE];
+      decoded = new byte[CHUNK_SIZE / 4 * 3];
+    }
+
+    private boolean fill() {
+      if (stringIndex >= string.length()) {
+        return false;
+      }
+      int n = Math.min(CHUNK_SIZE, string.length() - stringIndex);
+      for (int j = 0; j < n; j++) {
+        encoded[j] = (byte) string.charAt(stringIndex + j);
+      }
+      stringIndex = stringIndex + n;
+      decodedLength = Base64.getDecoder().decode(n == CHUNK_SIZE ? encoded : Arrays.copyOf(encoded, n), decoded);
+      decodedIndex = 0;
+      return true;
+    }
+
+    @Override
+    public int read() {
+      if (decodedIndex >= decodedLength && !fill()) {
+        return -1;
+      }
+      int b = decoded[decodedIndex] & 0xff;
+      decodedIndex = decodedIndex + 1;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (decodedIndex >= decodedLength && !fill()) {
+        return -1;
+      }
+      int n = Math.min(length, decodedLength - decodedIndex);
+      System.arraycopy(decoded, decodedIndex, bytes, offset, n);
+      decodedIndex = decodedIndex + n;
+      return n;
+    }
+  }
+
+  private static class BufferByteArrayOutputStream extends ByteArrayOutputStream {
+    private ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
   }
 
   public static class LambdaJsonSerializer extends JsonSerializer<SerializableFunction<?, ?>> {
@@ -104,11 +229,15 @@ public class SerializationUtils {
   public static String serialize(Object object, Mode mode) {
     try {
       return switch (mode) {
-        case JAVA -> encode(javaSerialize(object));
-        case JSON -> jsonSerialize(object, false);
-        case PRETTY_JSON -> jsonSerialize(object, true);
-        case GZIPPED_JAVA -> encode(gzip(javaSerialize(object)));
-        case GZIPPED_JSON -> encode(gzip(jsonSerialize(object, false).getBytes()));
+        case JSON -> OM.writeValueAsString(object);
+        case PRETTY_JSON -> PRETTY_OM.writeValueAsString(object);
+        case JAVA, GZIPPED_JAVA, GZIPPED_JSON, BINARY -> {
+          ByteArrayOutputStream baos = new ByteArrayOutputStream();
+          try (OutputStream os = Base64.getEncoder().wrap(baos)) {
+            serialize(object, os, mode);
+          }
+          yield baos.toString(StandardCharsets.US_ASCII);
+        }
       };
     } catch (IOException e) {
       L.log(Level.SEVERE, String.format("Cannot serialize due to %s", e), e);
@@ -119,10 +248,12 @@ public class SerializationUtils {
   public static <T> T deserialize(String string, Class<T> tClass, Mode mode) {
     try {
       return switch (mode) {
-        case JAVA -> javaDeserialize(decode(string), tClass);
-        case JSON, PRETTY_JSON -> jsonDeserialize(string, tClass);
-        case GZIPPED_JAVA -> javaDeserialize(ungzip(decode(string)), tClass);
-        case GZIPPED_JSON -> jsonDeserialize(new String(ungzip(decode(string))), tClass);
+        case JSON, PRETTY_JSON -> OM.readValue(string, tClass);
+        case JAVA, GZIPPED_JAVA, GZIPPED_JSON, BINARY -> deserialize(
+            new Base64StringInputStream(string),
+            tClass,
+            mode
+        );
       };
     } catch (IOException e) {
       L.log(Level.SEVERE, String.format("Cannot deserialize due to %s", e), e);
@@ -130,72 +261,80 @@ public class SerializationUtils {
     }
   }
 
-  private static byte[] javaSerialize(Object object) throws IOException {
-    try (
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(baos)
-    ) {
-      oos.writeObject(object);
-      oos.flush();
-      return baos.toByteArray();
+  public static void serialize(Object object, Path path, Mode mode) throws IOException {
+    try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE)) {
+      serialize(object, os, mode);
     }
   }
 
-  private static <T> T javaDeserialize(byte[] raw, Class<T> tClass) throws IOException {
-    try (
-        ByteArrayInputStream bais = new ByteArrayInputStream(raw);
-        ObjectInputStream ois = new ObjectInputStream(bais)
-    ) {
-      Object o = ois.readObject();
-      return (T) o;
-    } catch (ClassNotFoundException e) {
-      throw new IOException(e);
+  public static <T> T deserialize(Path path, Class<T> tClass, Mode mode) throws IOException {
+    try (InputStream is = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE)) {
+      return deserialize(is, tClass, mode);
     }
   }
 
-  private static String jsonSerialize(Object object, boolean pretty) throws IOException {
-    return pretty ? PRETTY_OM.writeValueAsString(object) : OM.writeValueAsString(object);
+  public static void serialize(Object object, OutputStream outputStream, Mode mode) throws IOException {
+    switch (mode) {
+      case JAVA -> javaSerialize(object, outputStream);
+      case JSON -> OM.writeValue(outputStream, object);
+      case PRETTY_JSON -> PRETTY_OM.writeValue(outputStream, object);
+      case GZIPPED_JAVA, GZIPPED_JSON -> {
+        GZIPOutputStream gos = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        serialize(object, gos, mode.equals(Mode.GZIPPED_JAVA) ? Mode.JAVA : Mode.JSON);
+        gos.finish();
+      }
+      case BINARY -> BINARY_OM.writeValue(outputStream, object);
+    }
+    outputStream.flush();
   }
 
-  private static <T> T jsonDeserialize(String string, Class<T> tClass) throws IOException {
-    return OM.readValue(string, tClass);
+  /**
+   * Reads one object from the stream, which is not closed; the stream may be read beyond the end of the object.
+   */
+  public static <T> T deserialize(InputStream inputStream, Class<T> tClass, Mode mode) throws IOException {
+    return switch (mode) {
+      case JAVA -> javaDeserialize(inputStream, tClass);
+      case JSON, PRETTY_JSON -> OM.readValue(inputStream, tClass);
+      case GZIPPED_JAVA -> javaDeserialize(new BufferedInputStream(new GZIPInputStream(inputStream, BUFFER_SIZE), BUFFER_SIZE), tClass);
+      case GZIPPED_JSON -> OM.readValue(new GZIPInputStream(inputStream, BUFFER_SIZE), tClass);
+      case BINARY -> BINARY_OM.readValue(inputStream, tClass);
+    };
   }
 
-  private static byte[] gzip(byte[] raw) throws IOException {
-    try (
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        GZIPOutputStream gos = new GZIPOutputStream(baos, true);
-    ) {
-      gos.write(raw);
-      gos.flush();
-      gos.close();
-      return baos.toByteArray();
-    }
+  public static ByteBuffer serializeToBuffer(Object object, Mode mode) throws IOException {
+    BufferByteArrayOutputStream baos = new BufferByteArrayOutputStream();
+    serialize(object, baos, mode);
+    return baos.toByteBuffer();
   }
 
-  private static byte[] ungzip(byte[] raw) throws IOException {
-    try (
-        ByteArrayInputStream bais = new ByteArrayInputStream(raw);
-        GZIPInputStream gis = new GZIPInputStream(bais);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    ) {
-      byte[] buf = new byte[1024];
-      while (true) {
-        int read = gis.read(buf);
-        if (read == -1) {
-          break;
-        }
-        baos.write(buf, 0, read);
-      }
-      return baos.toByteArray();
+  public static <T> T deserialize(ByteBuffer buffer, Class<T> tClass, Mode mode) throws IOException {
+    if (mode.equals(Mode.BINARY) && buffer.hasArray()) {
+      return BINARY_OM.readValue(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), tClass);
+    }
+    byte[] bytes;
+    int offset;
+    if (buffer.hasArray()) {
+      bytes = buffer.array();
+      offset = buffer.arrayOffset() + buffer.position();
+    } else {
+      bytes = new byte[buffer.remaining()];
+      buffer.duplicate().get(bytes);
+      offset = 0;
     }
+    return deserialize(new ByteArrayInputStream(bytes, offset, buffer.remaining()), tClass, mode);
   }
 
-  private static String encode(byte[] raw) {
-    return Base64.getEncoder().encodeToString(raw);
+  private static void javaSerialize(Object object, OutputStream outputStream) throws IOException {
+    ObjectOutputStream oos = new ObjectOutputStream(outputStream);
+    oos.writeObject(object);
+    oos.flush();
   }
 
-  private static byte[] decode(String string) {
-    return Base64.getDecoder().decode(string);
+  private static <T> T javaDeserialize(InputStream inputStream, Class<T> tClass) throws IOException {
+    try {
+      return (T) new ObjectInputStream(inputStream).readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
   }
 }
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.util;
+
+/**
+ * A sliding window of time-stamped samples, each made of {@code nOfChannels} {@code double}s, stored in primitive ring
+ * arrays. Samples are appended at the end and evicted from the beginning in amortized constant time; the minimum and
+ * maximum of each channel over the current window are maintained with monotonic deques and are read in constant time.
+ * The capacity doubles when the buffer is full.
+ *
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class TimeSeriesBuffer {
+
+  private static final int DEFAULT_CAPACITY = 64;
+
+  // indexes of the samples which may still become the extremum of a channel, ordered by time
+  private class MonotonicDeque {
+    private final int channel;
+    private final boolean min;
+    private long[] indexes;
+    private int head;
+    private int size;
+
+    private MonotonicDeque(int channel, boolean min) {
+      this.channel = channel;
+      this.min = min;
+      indexes = new long[ts.length];
+    }
+
+    private void push(long index, double value) {
+      while (size > 0) {
+        double last = get(indexes[(head + size - 1) % indexes.length], channel);
+        if (min ? (last < value) : (last > value)) {
+          break;
+        }
+        size = size - 1;
+      }
+      if (size == indexes.length) {
+        long[] newIndexes = new long[indexes.length * 2];
+        for (int i = 0; i < size; i++) {
+          newIndexes[i] = indexes[(head + i) % indexes.length];
+        }
+        indexes = newIndexes;
+        head = 0;
+      }
+      indexes[(head + size) % indexes.length] = index;
+      size = size + 1;
+    }
+
+    private void evict(long firstIndex) {
+      while (size > 0 && indexes[head] < firstIndex) {
+        head = (head + 1) % indexes.length;
+        size = size - 1;
+      }
+    }
+
+    private double peek() {
+      return size == 0 ? Double.NaN : get(indexes[head], channel);
+    }
+
+    private void clear() {
+      head = 0;
+      size = 0;
+    }
+  }
+
+  private final int nOfChannels;
+  private double[] ts;
+  private double[] values;
+  private int head;
+  private int size;
+  private long firstIndex;
+  private final MonotonicDeque[] minDeques;
+  private final MonotonicDeque[] maxDeques;
+
+  public TimeSeriesBuffer(int nOfChannels, int initialCapacity) {
+    this.nOfChannels = nOfChannels;
+    ts = new double[Math.max(1, initialCapacity)];
+    values = new double[ts.length * nOfChannels];
+    minDeques = new MonotonicDeque[nOfChannels];
+    maxDeques = new MonotonicDeque[nOfChannels];
+    for (int c = 0; c < nOfChannels; c++) {
+      minDeques[c] = new MonotonicDeque(c, true);
+      maxDeques[c] = new MonotonicDeque(c, false);
+    }
+  }
+
+  public TimeSeriesBuffer(int nOfChannels) {
+    this(nOfChannels, DEFAULT_CAPACITY);
+  }
+
+  public TimeSeriesBuffer() {
+    this(1);
+  }
+
+  private int slot(long index) {
+    return (int) ((head + (index - firstIndex)) % ts.length);
+  }
+
+  private double get(long index, int channel) {
+    return values[slot(index) * nOfChannels + channel];
+  }
+
+  public void add(double t, double... sample) {
+    if (sample.length != nOfChannels) {
+      throw new IllegalArgumentException(String.format(
+          "Wrong number of values in sample: %d expected, %d found",
+          nOfChannels,
+          sample.length
+      ));
+    }
+    if (size == ts.length) {
+      double[] newTs = new double[ts.length * 2];
+      double[] newValues = new double[newTs.length * nOfChannels];
+      for (int i = 0; i < size; i++) {
+        int s = (head + i) % ts.length;
+        newTs[i] = ts[s];
+        System.arraycopy(values, s * nOfChannels, newValues, i * nOfChannels, nOfChannels);
+      }
+      ts = newTs;
+      values = newValues;
+      head = 0;
+    }
+    long index = firstIndex + size;
+    int s = (head + size) % ts.length;
+    ts[s] = t;
+    System.arraycopy(sample, 0, values, s * nOfChannels, nOfChannels);
+    size = size + 1;
+    for (int c = 0; c < nOfChannels; c++) {
+      minDeques[c].push(index, sample[c]);
+      maxDeques[c].push(index, sample[c]);
+    }
+  }
+
+  /**
+   * Evicts all the samples with time strictly lower than {@code t}.
+   */
+  public void removeBefore(double t) {
+    while (size > 0 && ts[head] < t) {
+      head = (head + 1) % ts.length;
+      size = size - 1;
+      firstIndex = firstIndex + 1;
+    }
+    for (int c = 0; c < nOfChannels; c++) {
+      minDeques[c].evict(firstIndex);
+      maxDeques[c].evict(firstIndex);
+    }
+  }
+
+  public void clear() {
+    firstIndex = firstIndex + size;
+    head = 0;
+    size = 0;
+    for (int c = 0; c < nOfChannels; c++) {
+      minDeques[c].clear();
+      maxDeques[c].clear();
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int getNOfChannels() {
+    return nOfChannels;
+  }
+
+  /**
+   * Returns the time of the {@code i}-th sample, the oldest being the 0-th.
+   */
+  public double getT(int i) {
+    checkIndex(i);
+    return ts[(head + i) % ts.length];
+  }
+
+  public double get(int i, int channel) {
+    checkIndex(i);
+    return values[((head + i) % ts.length) * nOfChannels + channel];
+  }
+
+  public double get(int i) {
+    return get(i, 0);
+  }
+
+  public double firstT() {
+    return size == 0 ? Double.NaN : getT(0);
+  }
+
+  public double lastT() {
+    return size == 0 ? Double.NaN : getT(size - 1);
+  }
+
+  /**
+   * Returns the minimum value of the channel over the current window, or {@link Double#NaN} if the buffer is empty.
+   */
+  public double min(int channel) {
+    return minDeques[channel].peek();
+  }
+
+  public double max(int channel) {
+    return maxDeques[channel].peek();
+  }
+
+  public double min() {
+    return min(0);
+  }
+
+  public double max() {
+    return max(0);
+  }
+
+  private void checkIndex(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for size %d", i, size));
+    }
+  }
+
+}
@@ -20,11 +20,9 @@ import it.units.erallab.hmsrobots.core.geometry.BoundingBox;
 import it.units.erallab.hmsrobots.core.geometry.Shape;
 import it.units.erallab.hmsrobots.core.objects.Robot;
 import it.units.erallab.hmsrobots.core.snapshots.Snapshot;
+import it.units.erallab.hmsrobots.util.TimeSeriesBuffer;
 import it.units.erallab.hmsrobots.viewers.drawers.SubtreeDrawer;
 
-import java.util.SortedMap;
-import java.util.TreeMap;
-
 /**
  * @author Eric Medvet <eric.medvet@gmail.com>
  */
@@ -33,12 +31,12 @@ public class AllRobotFollower implements Framer {
   private final double sizeRelativeMargin;
   private final double windowT;
 
-  private final SortedMap<Double, BoundingBox> boundingBoxes;
+  private final TimeSeriesBuffer boundingBoxes; // minX, minY, maxX, maxY
 
   public AllRobotFollower(double sizeRelativeMargin, double windowT) {
     this.sizeRelativeMargin = sizeRelativeMargin;
     this.windowT = windowT;
-    boundingBoxes = new TreeMap<>();
+    boundingBoxes = new TimeSeriesBuffer(4);
   }
 
   @Override
@@ -47,15 +45,22 @@ public class AllRobotFollower implements Framer {
     SubtreeDrawer.Extractor.matches(Shape.class, Robot.class, null).extract(snapshot).stream()
         .map(s -> ((Shape) s.getContent()).boundingBox())
         .reduce(BoundingBox::largest)
-        .ifPresent(boundingBox -> boundingBoxes.put(t, boundingBox));
+        .ifPresent(boundingBox -> boundingBoxes.add(
+            t,
+            boundingBox.min.x,
+            boundingBox.min.y,
+            boundingBox.max.x,
+            boundingBox.max.y
+        ));
     //clean
-    if (boundingBoxes.firstKey() < (t - windowT)) {
-      boundingBoxes.remove(boundingBoxes.firstKey());
-    }
+    boundingBoxes.removeBefore(t - windowT);
     //aggregate
-    BoundingBox aggregated = boundingBoxes.values().stream()
-        .reduce(BoundingBox::largest)
-        .orElse(BoundingBox.of(0, 0, 1, 1));
+    BoundingBox aggregated = boundingBoxes.isEmpty() ? BoundingBox.of(0, 0, 1, 1) : BoundingBox.of(
+        boundingBoxes.min(0),
+        boundingBoxes.min(1),
+        boundingBoxes.max(2),
+        boundingBoxes.max(3)
+    );
     //enlarge
     double cx = (aggregated.min.x + aggregated.max.x) / 2d;
     double cy = (aggregated.min.y + aggregated.max.y) / 2d;
@@ -76,11 +76,16 @@ public class FramesImageBuilder implements SnapshotListener {
   }
 
   @Override
-  public void listen(double t, Snapshot snapshot) {
+  public boolean wantsSnapshot(double t) {
     if ((t < initialT) || (t >= finalT)) { //out of time window
-      return;
+      return false;
     }
-    if ((t - lastT) < dT) { //wait for next snapshot
+    return (t - lastT) >= dT; //otherwise wait for next snapshot
+  }
+
+  @Override
+  public void listen(double t, Snapshot snapshot) {
+    if (!wantsSnapshot(t)) {
       return;
     }
     lastT = t;
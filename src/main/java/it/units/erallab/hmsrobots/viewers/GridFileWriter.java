@@ -87,10 +87,20 @@ public class GridFileWriter implements Flushable, GridSnapshotListener {
 
   @Override
   public SnapshotListener listener(final int lX, final int lY) {
-    return (double t, Snapshot snapshot) -> {
-      List<Double> times = timesGrid.get(lX, lY);
-      double lastT = times.isEmpty() ? Double.NEGATIVE_INFINITY : times.get(times.size() - 1);
-      if (t >= startTime && t - lastT >= 1d / frameRate) {
+    return new SnapshotListener() {
+      @Override
+      public boolean wantsSnapshot(double t) {
+        List<Double> times = timesGrid.get(lX, lY);
+        double lastT = times.isEmpty() ? Double.NEGATIVE_INFINITY : times.get(times.size() - 1);
+        return t >= startTime && t - lastT >= 1d / frameRate;
+      }
+
+      @Override
+      public void listen(double t, Snapshot snapshot) {
+        if (!wantsSnapshot(t)) {
+          return;
+        }
+        List<Double> times = timesGrid.get(lX, lY);
         int frameNumber = (int) Math.round((t - startTime) * frameRate);
         int lastFrameNumber = times.isEmpty() ? frameNumber : (int) Math.round((times.get(times.size() - 1) - startTime) * frameRate);
         synchronized (images) {
@@ -29,13 +29,10 @@ import org.apache.commons.lang3.tuple.Pair;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferStrategy;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Function;
 
 /**
@@ -43,6 +40,15 @@ import java.util.function.Function;
  */
 public class GridOnlineViewer extends JFrame implements GridSnapshotListener {
 
+  /**
+   * What a producer does when the queue of its cell is full: with {@link #BLOCK}, it waits for the composer to consume
+   * snapshots, hence the episode is slowed down to the pace of the viewer; with {@link #DROP_OLDEST}, it discards the
+   * oldest queued snapshot and never waits.
+   */
+  public enum QueuePolicy {
+    BLOCK, DROP_OLDEST
+  }
+
   private static class TimedSnapshot {
     private final double t;
     private final Snapshot snapshot;
@@ -53,21 +59,41 @@ public class GridOnlineViewer extends JFrame implements GridSnapshotListener {
     }
   }
 
+  private static class TimedFrame {
+    private final double t;
+    private final Grid<TimedSnapshot> snapshotGrid;
+
+    public TimedFrame(double t, Grid<TimedSnapshot> snapshotGrid) {
+      this.t = t;
+      this.snapshotGrid = snapshotGrid;
+    }
+  }
+
   private final static int FRAME_RATE = 20;
   private final static int INIT_WIN_WIDTH = 1000;
   private final static int INIT_WIN_HEIGHT = 600;
+  private final static int SNAPSHOT_QUEUE_CAPACITY = 2 * FRAME_RATE;
+  private final static int FRAME_QUEUE_CAPACITY = 2 * FRAME_RATE;
+  private final static long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1000 / FRAME_RATE);
 
   private final Grid<Drawer> drawersGrid;
-  private final Queue<Grid<TimedSnapshot>> gridQueue;
-  private final Grid<Queue<TimedSnapshot>> queueGrid;
+  private final BlockingQueue<TimedFrame> frameQueue;
+  private final Grid<BlockingQueue<TimedSnapshot>> queueGrid;
+  private final Grid<Double> lastTimesGrid;
+  private final QueuePolicy queuePolicy;
 
   private final Canvas canvas;
   private final ScheduledExecutorService executor;
 
   private double t;
-  private final boolean running;
+  private volatile boolean running;
+  private volatile Thread composerThread;
 
   public GridOnlineViewer(Grid<String> namesGrid, Grid<Drawer> drawersGrid, ScheduledExecutorService executor) {
+    this(namesGrid, drawersGrid, executor, QueuePolicy.BLOCK);
+  }
+
+  public GridOnlineViewer(Grid<String> namesGrid, Grid<Drawer> drawersGrid, ScheduledExecutorService executor, QueuePolicy queuePolicy) {
     super("World viewer");
     if (namesGrid.getW() != drawersGrid.getW() || namesGrid.getH() != drawersGrid.getH()) {
       throw new IllegalArgumentException("Names grid and drawers grid should have the same size");
@@ -86,15 +112,11 @@ public class GridOnlineViewer extends JFrame implements GridSnapshotListener {
         )
     );
     this.executor = executor;
+    this.queuePolicy = queuePolicy;
     //create things
-    gridQueue = new LinkedList<>();
-    queueGrid = Grid.create(namesGrid);
-    //create drawer
-    for (int x = 0; x < namesGrid.getW(); x++) {
-      for (int y = 0; y < namesGrid.getH(); y++) {
-        queueGrid.set(x, y, new LinkedList<>());
-      }
-    }
+    frameQueue = new ArrayBlockingQueue<>(FRAME_QUEUE_CAPACITY);
+    queueGrid = Grid.create(namesGrid.getW(), namesGrid.getH(), (x, y) -> new ArrayBlockingQueue<>(SNAPSHOT_QUEUE_CAPACITY));
+    lastTimesGrid = Grid.create(namesGrid.getW(), namesGrid.getH(), Double.NEGATIVE_INFINITY);
     //create/set ui components
     setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     Dimension dimension = new Dimension(INIT_WIN_WIDTH, INIT_WIN_HEIGHT);
@@ -110,12 +132,15 @@ public class GridOnlineViewer extends JFrame implements GridSnapshotListener {
     running = true;
     //start consumer of single frames
     executor.submit(() -> {
+          composerThread = Thread.currentThread();
+          Grid<TimedSnapshot> snapshotGrid = Grid.create(queueGrid);
           while (running) {
             //check if ready
-            Grid<TimedSnapshot> snapshotGrid = Grid.create(queueGrid);
-            synchronized (queueGrid) {
-              for (Grid.Entry<Queue<TimedSnapshot>> entry : queueGrid) {
-                TimedSnapshot snapshot;
+            boolean ready = true;
+            for (Grid.Entry<BlockingQueue<TimedSnapshot>> entry : queueGrid) {
+              TimedSnapshot snapshot;
+              //the lock prevents a dropping producer from removing the head between peek and poll
+              synchronized (entry.getValue()) {
                 while ((snapshot = entry.getValue().peek()) != null) {
                   if (snapshot.t < t) {
                     entry.getValue().poll();
@@ -123,29 +148,22 @@ public class GridOnlineViewer extends JFrame implements GridSnapshotListener {
                     break;
                   }
                 }
-                snapshotGrid.set(entry.getX(), entry.getY(), snapshot);
               }
-            }
-            boolean ready = true;
-            for (Grid.Entry<Queue<TimedSnapshot>> entry : queueGrid) {
-              ready = ready && ((namesGrid.get(entry.getX(), entry.getY()) == null) || (snapshotGrid.get(entry.getX(), entry.getY()) != null));
+              snapshotGrid.set(entry.getX(), entry.getY(), snapshot);
+              ready = ready && ((namesGrid.get(entry.getX(), entry.getY()) == null) || (snapshot != null));
             }
             if (ready) {
+              //render asynchronously, waiting if the drawer is late
+              try {
+                frameQueue.put(new TimedFrame(t, Grid.copy(snapshotGrid)));
+              } catch (InterruptedException ex) {
+                running = false;
+              }
               //update time
               t = t + 1d / FRAME_RATE;
-              //render asynchronously
-              synchronized (gridQueue) {
-                gridQueue.offer(Grid.copy(snapshotGrid));
-                gridQueue.notifyAll();
-              }
             } else {
-              synchronized (queueGrid) {
-                try {
-                  queueGrid.wait();
-                } catch (InterruptedException ex) {
-                  //ignore
-                }
-              }
+              //wait for producers
+              LockSupport.parkNanos(this, IDLE_PARK_NANOS);
             }
           }
         }
@@ -166,35 +184,22 @@ public class GridOnlineViewer extends JFrame implements GridSnapshotListener {
           stopwatch.start();
         }
         double currentTime = (double) stopwatch.elapsed(TimeUnit.MILLISECONDS) / 1000d;
-        Grid<TimedSnapshot> localSnapshotGrid = null;
-        synchronized (gridQueue) {
-          while (!gridQueue.isEmpty()) {
-            localSnapshotGrid = gridQueue.poll();
-            if (gridQueue.isEmpty() || (gridQueue.peek().get(0, 0).t > currentTime)) {
-              break;
-            }
+        TimedFrame frame = null;
+        while (!frameQueue.isEmpty()) {
+          frame = frameQueue.poll();
+          TimedFrame next = frameQueue.peek();
+          if (next == null || next.t > currentTime) {
+            break;
           }
         }
-        if (localSnapshotGrid != null) {
+        if (frame != null) {
           try {
-            renderFrame(localSnapshotGrid);
+            renderFrame(frame.snapshotGrid);
           } catch (Throwable t) {
             t.printStackTrace();
             System.exit(0);
           }
-          synchronized (gridQueue) {
-            gridQueue.notifyAll();
-          }
-        } else {
-          synchronized (gridQueue) {
-            try {
-              gridQueue.wait();
-            } catch (InterruptedException ex) {
-              //ignore
-            }
-          }
         }
-
       }
     };
     executor.scheduleAtFixedRate(drawer, Math.round(delay * 1000d), Math.round(1000d / (double) FRAME_RATE), TimeUnit.MILLISECONDS);
@@ -202,10 +207,37 @@ public class GridOnlineViewer extends JFrame implements GridSnapshotListener {
 
   @Override
   public SnapshotListener listener(final int lX, final int lY) {
-    return (double t, Snapshot snapshot) -> {
-      synchronized (queueGrid) {
-        queueGrid.get(lX, lY).offer(new TimedSnapshot(t, snapshot));
-        queueGrid.notifyAll();
+    return new SnapshotListener() {
+      @Override
+      public boolean wantsSnapshot(double t) {
+        return t - lastTimesGrid.get(lX, lY) >= 1d / FRAME_RATE;
+      }
+
+      @Override
+      public void listen(double t, Snapshot snapshot) {
+        if (!wantsSnapshot(t)) {
+          return;
+        }
+        lastTimesGrid.set(lX, lY, t);
+        BlockingQueue<TimedSnapshot> queue = queueGrid.get(lX, lY);
+        TimedSnapshot timedSnapshot = new TimedSnapshot(t, snapshot);
+        if (queuePolicy.equals(QueuePolicy.BLOCK)) {
+          try {
+            queue.put(timedSnapshot);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+        } else {
+          synchronized (queue) {
+            while (!queue.offer(timedSnapshot)) {
+              queue.poll();
+            }
+          }
+        }
+        Thread thread = composerThread;
+        if (thread != null) {
+          LockSupport.unpark(thread);
+        }
       }
     };
   }
@@ -229,13 +261,19 @@ public class GridOnlineViewer extends JFrame implements GridSnapshotListener {
     Toolkit.getDefaultToolkit().sync();
   }
 
-  public static <S> void run(Task<S, ?> task, Grid<Pair<String, S>> namedSolutions, Function<String, Drawer> drawerSupplier) {
+  public static <S> void run(Task<S, ?> task, Grid<Pair<String, S>> namedSolutions, Function<String, Drawer> drawerSupplier, QueuePolicy queuePolicy) {
     ScheduledExecutorService uiExecutor = Executors.newScheduledThreadPool(4);
-    ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    //with blocking queues, all the episodes have to run together, since the composer waits for each of them
+    int nOfThreads = Runtime.getRuntime().availableProcessors();
+    if (queuePolicy.equals(QueuePolicy.BLOCK)) {
+      nOfThreads = Math.max(nOfThreads, (int) namedSolutions.count(Objects::nonNull));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
     GridOnlineViewer gridOnlineViewer = new GridOnlineViewer(
         Grid.create(namedSolutions, p -> p == null ? null : p.getLeft()),
         Grid.create(namedSolutions, p -> drawerSupplier.apply(p.getLeft())),
-        uiExecutor
+        uiExecutor,
+        queuePolicy
     );
     gridOnlineViewer.start(3);
     GridEpisodeRunner<S> runner = new GridEpisodeRunner<>(
@@ -247,6 +285,10 @@ public class GridOnlineViewer extends JFrame implements GridSnapshotListener {
     runner.run();
   }
 
+  public static <S> void run(Task<S, ?> task, Grid<Pair<String, S>> namedSolutions, Function<String, Drawer> drawerSupplier) {
+    run(task, namedSolutions, drawerSupplier, QueuePolicy.DROP_OLDEST);
+  }
+
   public static <S> void run(Task<S, ?> task, Grid<Pair<String, S>> namedSolutions) {
     run(task, namedSolutions, Drawers::basicWithMiniWorld);
   }
@@ -0,0 +1,612 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.viewers;
+
+import it.units.erallab.hmsrobots.core.geometry.BoundingBox;
+import it.units.erallab.hmsrobots.core.geometry.Point2;
+import it.units.erallab.hmsrobots.core.geometry.Poly;
+import it.units.erallab.hmsrobots.core.geometry.Vector;
+import it.units.erallab.hmsrobots.core.objects.BreakableVoxel;
+import it.units.erallab.hmsrobots.core.snapshots.*;
+import it.units.erallab.hmsrobots.util.Domain;
+import it.units.erallab.hmsrobots.util.Grid;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary layout of recorded episodes. A recording starts with a header containing the schema of the snapshot tree,
+ * i.e., its structure and the parts of the snapshots that do not change during an episode (classes, domains, sizes),
+ * and then contains one frame for each recorded snapshot. In a frame, each numeric value of the snapshot tree is
+ * quantized with the recording resolution (flags and enum ordinals are kept exact) and written as a zigzag varint of
+ * the difference with respect to the same value in the previous frame. The weights of an {@link MLPState}, which
+ * seldom change, are written only in the frames where they differ from the previous frame, after a flag byte.
+ * Non-finite values are not preserved.
+ * The mechanical parts of voxels (vertex bodies and springs) are not recorded.
+ *
+ * @author eric
+ */
+final class ReplayFormat {
+
+  static final int MAGIC = 0x484d5352; // HMSR
+  static final short VERSION = 2;
+  static final byte FRAME_MARKER = 1;
+  static final byte END_MARKER = 0;
+
+  private ReplayFormat() {
+  }
+
+  enum Kind {NONE, POLY, VOXEL_POLY, ROBOT_SHAPE, VECTOR, SCOPED_READINGS, LIDAR_READINGS, STACKED_SCOPED_READINGS, MLP_STATE}
+
+  static class Node {
+    private final Kind kind;
+    private final String className;
+    private final Class<? extends Snapshottable> snapshottableClass;
+    private final int[] sizes;
+    private final Domain[] domains;
+    private final double[] constants;
+    private final boolean[] integral;
+    private final List<Node> children;
+    private final int[] childIndexes;
+    private final int nOfSnapshotChildren;
+    private final long[] previous;
+    private final double[] values;
+    private final long[] previousWeights;
+    private final double[] weightValues;
+
+    private Node(Kind kind, String className, int[] sizes, Domain[] domains, double[] constants, List<Node> children, int[] childIndexes, int nOfSnapshotChildren) {
+      this.kind = kind;
+      this.className = className;
+      this.sizes = sizes;
+      this.domains = domains;
+      this.constants = constants;
+      this.children = children;
+      this.childIndexes = childIndexes;
+      this.nOfSnapshotChildren = nOfSnapshotChildren;
+      snapshottableClass = snapshottableClass(className);
+      integral = new boolean[width(kind, sizes)];
+      if (kind.equals(Kind.VOXEL_POLY)) {
+        integral[2 * sizes[0] + 3] = true;
+        for (int i = 0; i < BreakableVoxel.ComponentType.values().length * sizes[1]; i++) {
+          integral[2 * sizes[0] + 8 + i] = true;
+        }
+      }
+      previous = new long[integral.length];
+      values = new double[integral.length];
+      previousWeights = new long[kind.equals(Kind.MLP_STATE) ? mlpWeightsCount(sizes) : 0];
+      weightValues = new double[previousWeights.length];
+    }
+
+    private static Class<? extends Snapshottable> snapshottableClass(String className) {
+      try {
+        Class<?> c = Class.forName(className);
+        if (Snapshottable.class.isAssignableFrom(c)) {
+          return c.asSubclass(Snapshottable.class);
+        }
+      } catch (ClassNotFoundException e) {
+        //ignore: might be a lambda or a class not available here
+      }
+      return Snapshottable.class;
+    }
+
+    static Node of(Snapshot snapshot) {
+      Object content = snapshot.getContent();
+      Kind kind;
+      int[] sizes = new int[0];
+      Domain[] domains = new Domain[0];
+      double[] constants = new double[0];
+      if (content instanceof VoxelPoly) {
+        kind = Kind.VOXEL_POLY;
+        sizes = new int[]{((VoxelPoly) content).getVertexes().length, ((VoxelPoly) content).getMalfunctions().isEmpty() ? 0 : 1};
+      } else if (content instanceof Poly) {
+        kind = Kind.POLY;
+        sizes = new int[]{((Poly) content).getVertexes().length};
+      } else if (content instanceof RobotShape) {
+        kind = Kind.ROBOT_SHAPE;
+        Grid<? extends VoxelPoly> polies = ((RobotShape) content).getPolies();
+        sizes = new int[2 + polies.getW() * polies.getH()];
+        sizes[0] = polies.getW();
+        sizes[1] = polies.getH();
+        for (Grid.Entry<? extends VoxelPoly> entry : polies) {
+          sizes[2 + entry.getY() * polies.getW() + entry.getX()] = entry.getValue() == null ? 0 : 1;
+        }
+      } else if (content instanceof Vector) {
+        kind = Kind.VECTOR;
+      } else if (content instanceof LidarReadings) {
+        kind = Kind.LIDAR_READINGS;
+        domains = ((LidarReadings) content).getDomains();
+        sizes = new int[]{((LidarReadings) content).getReadings().length};
+        constants = ((LidarReadings) content).getRayDirections();
+      } else if (content instanceof ScopedReadings) {
+        kind = Kind.SCOPED_READINGS;
+        domains = ((ScopedReadings) content).getDomains();
+        sizes = new int[]{((ScopedReadings) content).getReadings().length};
+      } else if (content instanceof StackedScopedReadings) {
+        kind = Kind.STACKED_SCOPED_READINGS;
+        ScopedReadings[] stack = ((StackedScopedReadings) content).getScopedReadings();
+        sizes = new int[stack.length];
+        List<Domain> allDomains = new ArrayList<>();
+        for (int i = 0; i < stack.length; i++) {
+          sizes[i] = stack[i].getReadings().length;
+          allDomains.addAll(List.of(stack[i].getDomains()));
+        }
+        domains = allDomains.toArray(Domain[]::new);
+      } else if (content instanceof MLPState) {
+        kind = Kind.MLP_STATE;
+        sizes = mlpSizes(((MLPState) content).getActivationValues(), ((MLPState) content).getWeights());
+        domains = new Domain[]{((MLPState) content).getActivationDomain()};
+      } else {
+        kind = Kind.NONE;
+      }
+      List<Node> children = new ArrayList<>(snapshot.getChildren().size());
+      List<Integer> childIndexes = new ArrayList<>(snapshot.getChildren().size());
+      for (int i = 0; i < snapshot.getChildren().size(); i++) {
+        Object childContent = snapshot.getChildren().get(i).getContent();
+        if (kind.equals(Kind.VOXEL_POLY) && ((childContent instanceof Poly && !(childContent instanceof VoxelPoly)) || childContent instanceof Vector)) {
+          continue;
+        }
+        children.add(of(snapshot.getChildren().get(i)));
+        childIndexes.add(i);
+      }
+      Node node = new Node(
+          kind, snapshot.getSnapshottableClass().getName(), sizes, domains, constants,
+          children, childIndexes.stream().mapToInt(i -> i).toArray(), snapshot.getChildren().size()
+      );
+      if (kind.equals(Kind.ROBOT_SHAPE) && node.robotSize() != node.voxelPolyChildren()) {
+        throw new IllegalArgumentException(String.format(
+            "Robot shape with %d voxels and %d voxel children cannot be recorded",
+            node.robotSize(), node.voxelPolyChildren()
+        ));
+      }
+      return node;
+    }
+
+    private int robotSize() {
+      int n = 0;
+      for (int i = 2; i < sizes.length; i++) {
+        n = n + sizes[i];
+      }
+      return n;
+    }
+
+    private int voxelPolyChildren() {
+      return (int) children.stream().filter(c -> c.kind.equals(Kind.VOXEL_POLY)).count();
+    }
+
+    private static int width(Kind kind, int[] sizes) {
+      return switch (kind) {
+        case NONE -> 0;
+        case POLY -> 2 * sizes[0];
+        case VOXEL_POLY -> 2 * sizes[0] + 8 + BreakableVoxel.ComponentType.values().length * sizes[1];
+        case ROBOT_SHAPE, VECTOR -> 4;
+        case SCOPED_READINGS -> sizes[0];
+        case LIDAR_READINGS -> sizes[0] + 1;
+        case STACKED_SCOPED_READINGS -> sum(sizes);
+        case MLP_STATE -> mlpActivationsCount(sizes);
+      };
+    }
+
+    private static int sum(int[] sizes) {
+      int s = 0;
+      for (int size : sizes) {
+        s = s + size;
+      }
+      return s;
+    }
+
+    // sizes of an MLP state: number of layers, size of each layer, number of weight layers, number of rows of each
+    // weight layer, length of each row
+    private static int[] mlpSizes(double[][] activations, double[][][] weights) {
+      List<Integer> sizes = new ArrayList<>();
+      sizes.add(activations.length);
+      for (double[] layerValues : activations) {
+        sizes.add(layerValues == null ? 0 : layerValues.length);
+      }
+      sizes.add(weights.length);
+      for (double[][] layerWeights : weights) {
+        sizes.add(layerWeights.length);
+      }
+      for (double[][] layerWeights : weights) {
+        for (double[] neuronWeights : layerWeights) {
+          sizes.add(neuronWeights.length);
+        }
+      }
+      return sizes.stream().mapToInt(i -> i).toArray();
+    }
+
+    private static int mlpActivationsCount(int[] sizes) {
+      int c = 0;
+      for (int i = 0; i < sizes[0]; i++) {
+        c = c + sizes[1 + i];
+      }
+      return c;
+    }
+
+    private static int mlpWeightsCount(int[] sizes) {
+      int c = 0;
+      for (int i = mlpRowLengthsStart(sizes); i < sizes.length; i++) {
+        c = c + sizes[i];
+      }
+      return c;
+    }
+
+    private static int mlpRowLengthsStart(int[] sizes) {
+      int nOfWeightLayers = sizes[1 + sizes[0]];
+      return 2 + sizes[0] + nOfWeightLayers;
+    }
+
+    void writeSchema(DataOutput out) throws IOException {
+      out.writeByte(kind.ordinal());
+      out.writeUTF(className);
+      writeInts(out, sizes);
+      out.writeInt(domains.length);
+      for (Domain domain : domains) {
+        out.writeDouble(domain.getMin());
+        out.writeDouble(domain.getMax());
+      }
+      out.writeInt(constants.length);
+      for (double constant : constants) {
+        out.writeDouble(constant);
+      }
+      out.writeInt(nOfSnapshotChildren);
+      writeInts(out, childIndexes);
+      for (Node child : children) {
+        child.writeSchema(out);
+      }
+    }
+
+    static Node readSchema(DataInput in) throws IOException {
+      Kind kind = Kind.values()[in.readByte()];
+      String className = in.readUTF();
+      int[] sizes = readInts(in);
+      Domain[] domains = new Domain[in.readInt()];
+      for (int i = 0; i < domains.length; i++) {
+        domains[i] = Domain.of(in.readDouble(), in.readDouble());
+      }
+      double[] constants = new double[in.readInt()];
+      for (int i = 0; i < constants.length; i++) {
+        constants[i] = in.readDouble();
+      }
+      int nOfSnapshotChildren = in.readInt();
+      int[] childIndexes = readInts(in);
+      List<Node> children = new ArrayList<>(childIndexes.length);
+      for (int i = 0; i < childIndexes.length; i++) {
+        children.add(readSchema(in));
+      }
+      return new Node(kind, className, sizes, domains, constants, children, childIndexes, nOfSnapshotChildren);
+    }
+
+    void writeFrame(Snapshot snapshot, DataOutput out, double resolution) throws IOException {
+      if (snapshot.getChildren().size() != nOfSnapshotChildren) {
+        throw new IllegalArgumentException(String.format(
+            "Snapshot structure changed: %d children expected, %d found",
+            nOfSnapshotChildren, snapshot.getChildren().size()
+        ));
+      }
+      fillValues(snapshot.getContent());
+      for (int i = 0; i < values.length; i++) {
+        long q = integral[i] ? Math.round(values[i]) : Math.round(values[i] / resolution);
+        writeVarLong(out, zigzag(q - previous[i]));
+        previous[i] = q;
+      }
+      if (kind.equals(Kind.MLP_STATE)) {
+        writeWeights(((MLPState) snapshot.getContent()).getWeights(), out, resolution);
+      }
+      for (int i = 0; i < children.size(); i++) {
+        children.get(i).writeFrame(snapshot.getChildren().get(childIndexes[i]), out, resolution);
+      }
+    }
+
+    Snapshot readFrame(DataInput in, double resolution, boolean build) throws IOException {
+      for (int i = 0; i < values.length; i++) {
+        previous[i] = previous[i] + unzigzag(readVarLong(in));
+        values[i] = integral[i] ? (double) previous[i] : (double) previous[i] * resolution;
+      }
+      if (kind.equals(Kind.MLP_STATE) && in.readByte() != 0) {
+        for (int i = 0; i < weightValues.length; i++) {
+          previousWeights[i] = previousWeights[i] + unzigzag(readVarLong(in));
+          weightValues[i] = (double) previousWeights[i] * resolution;
+        }
+      }
+      List<Snapshot> childSnapshots = new ArrayList<>(children.size());
+      for (Node child : children) {
+        Snapshot childSnapshot = child.readFrame(in, resolution, build);
+        if (build) {
+          childSnapshots.add(childSnapshot);
+        }
+      }
+      if (!build) {
+        return null;
+      }
+      Snapshot snapshot = new Snapshot(buildContent(childSnapshots), snapshottableClass);
+      snapshot.getChildren().addAll(childSnapshots);
+      return snapshot;
+    }
+
+    private void writeWeights(double[][][] weights, DataOutput out, double resolution) throws IOException {
+      int c = 0;
+      for (double[][] layerWeights : weights) {
+        for (double[] neuronWeights : layerWeights) {
+          c = c + neuronWeights.length;
+        }
+      }
+      if (c != weightValues.length) {
+        throw new IllegalArgumentException(String.format(
+            "Snapshot structure changed: %d weights expected, %d found",
+            weightValues.length, c
+        ));
+      }
+      c = 0;
+      boolean changed = false;
+      for (double[][] layerWeights : weights) {
+        for (double[] neuronWeights : layerWeights) {
+          for (double weight : neuronWeights) {
+            long q = Math.round(weight / resolution);
+            changed = changed || (q != previousWeights[c]);
+            weightValues[c] = weight;
+            c = c + 1;
+          }
+        }
+      }
+      out.writeByte(changed ? 1 : 0);
+      if (changed) {
+        for (int i = 0; i < weightValues.length; i++) {
+          long q = Math.round(weightValues[i] / resolution);
+          writeVarLong(out, zigzag(q - previousWeights[i]));
+          previousWeights[i] = q;
+        }
+      }
+    }
+
+    private void fillValues(Object content) {
+      int l = switch (kind) {
+        case NONE -> 0;
+        case POLY -> fillPoints(((Poly) content).getVertexes(), 0);
+        case VOXEL_POLY -> {
+          VoxelPoly poly = (VoxelPoly) content;
+          int c = fillPoints(poly.getVertexes(), 0);
+          values[c] = poly.getAngle();
+          values[c + 1] = poly.getLinearVelocity().x;
+          values[c + 2] = poly.getLinearVelocity().y;
+          values[c + 3] = poly.isTouchingGround() ? 1d : 0d;
+          values[c + 4] = poly.getAreaRatio();
+          values[c + 5] = poly.getAreaRatioEnergy();
+          values[c + 6] = poly.getLastAppliedForce();
+          values[c + 7] = poly.getControlEnergy();
+          c = c + 8;
+          if (sizes[1] > 0) {
+            for (BreakableVoxel.ComponentType type : BreakableVoxel.ComponentType.values()) {
+              BreakableVoxel.MalfunctionType malfunctionType = poly.getMalfunctions().get(type);
+              values[c] = malfunctionType == null ? -1 : malfunctionType.ordinal();
+              c = c + 1;
+            }
+          }
+          yield c;
+        }
+        case ROBOT_SHAPE -> fillPoints(new Point2[]{((RobotShape) content).boundingBox().min, ((RobotShape) content).boundingBox().max}, 0);
+        case VECTOR -> fillPoints(new Point2[]{((Vector) content).getStart(), ((Vector) content).getEnd()}, 0);
+        case SCOPED_READINGS -> fillArray(((ScopedReadings) content).getReadings(), 0);
+        case LIDAR_READINGS -> {
+          int c = fillArray(((LidarReadings) content).getReadings(), 0);
+          values[c] = ((LidarReadings) content).getVoxelAngle();
+          yield c + 1;
+        }
+        case STACKED_SCOPED_READINGS -> {
+          int c = 0;
+          for (ScopedReadings scopedReadings : ((StackedScopedReadings) content).getScopedReadings()) {
+            c = fillArray(scopedReadings.getReadings(), c);
+          }
+          yield c;
+        }
+        case MLP_STATE -> {
+          int c = 0;
+          for (double[] layerValues : ((MLPState) content).getActivationValues()) {
+            c = fillArray(layerValues == null ? new double[0] : layerValues, c);
+          }
+          yield c;
+        }
+      };
+      if (l != values.length) {
+        throw new IllegalArgumentException(String.format(
+            "Snapshot structure changed: %d values expected for %s, %d found",
+            values.length, kind, l
+        ));
+      }
+    }
+
+    private int fillPoints(Point2[] points, int c) {
+      for (Point2 point : points) {
+        if (c + 1 < values.length) {
+          values[c] = point.x;
+          values[c + 1] = point.y;
+        }
+        c = c + 2;
+      }
+      return c;
+    }
+
+    private int fillArray(double[] array, int c) {
+      if (c + array.length <= values.length) {
+        System.arraycopy(array, 0, values, c, array.length);
+      }
+      return c + array.length;
+    }
+
+    private Point2[] points(int from, int n) {
+      Point2[] points = new Point2[n];
+      for (int i = 0; i < n; i++) {
+        points[i] = Point2.of(values[from + 2 * i], values[from + 2 * i + 1]);
+      }
+      return points;
+    }
+
+    private double[] array(int from, int n) {
+      double[] array = new double[n];
+      System.arraycopy(values, from, array, 0, n);
+      return array;
+    }
+
+    private Domain[] domains(int from, int n) {
+      Domain[] localDomains = new Domain[n];
+      System.arraycopy(domains, from, localDomains, 0, n);
+      return localDomains;
+    }
+
+    private Object buildContent(List<Snapshot> childSnapshots) {
+      return switch (kind) {
+        case NONE -> new Object();
+        case POLY -> Poly.of(points(0, sizes[0]));
+        case VOXEL_POLY -> {
+          int c = 2 * sizes[0];
+          Map<BreakableVoxel.ComponentType, BreakableVoxel.MalfunctionType> malfunctions = Map.of();
+          if (sizes[1] > 0) {
+            malfunctions = new EnumMap<>(BreakableVoxel.ComponentType.class);
+            for (int i = 0; i < BreakableVoxel.ComponentType.values().length; i++) {
+              int ordinal = (int) values[c + 8 + i];
+              if (ordinal >= 0) {
+                malfunctions.put(BreakableVoxel.ComponentType.values()[i], BreakableVoxel.MalfunctionType.values()[ordinal]);
+              }
+            }
+          }
+          yield new VoxelPoly(
+              List.of(points(0, sizes[0])),
+              values[c],
+              Point2.of(values[c + 1], values[c + 2]),
+              values[c + 3] > 0.5d,
+              values[c + 4],
+              values[c + 5],
+              values[c + 6],
+              values[c + 7],
+              malfunctions
+          );
+        }
+        case ROBOT_SHAPE -> {
+          Grid<VoxelPoly> polies = Grid.create(sizes[0], sizes[1]);
+          List<VoxelPoly> voxelPolies = new ArrayList<>();
+          for (int i = 0; i < children.size(); i++) {
+            if (children.get(i).kind.equals(Kind.VOXEL_POLY)) {
+              voxelPolies.add((VoxelPoly) childSnapshots.get(i).getContent());
+            }
+          }
+          int c = 0;
+          for (int y = 0; y < sizes[1]; y++) {
+            for (int x = 0; x < sizes[0]; x++) {
+              if (sizes[2 + y * sizes[0] + x] > 0) {
+                polies.set(x, y, voxelPolies.get(c));
+                c = c + 1;
+              }
+            }
+          }
+          Point2[] corners = points(0, 2);
+          yield new RobotShape(polies, BoundingBox.of(corners));
+        }
+        case VECTOR -> {
+          Point2[] ends = points(0, 2);
+          yield Vector.of(ends[0], ends[1]);
+        }
+        case SCOPED_READINGS -> new ScopedReadings(array(0, sizes[0]), domains(0, sizes[0]));
+        case LIDAR_READINGS -> new LidarReadings(
+            array(0, sizes[0]),
+            domains(0, sizes[0]),
+            values[sizes[0]],
+            constants.clone()
+        );
+        case STACKED_SCOPED_READINGS -> {
+          ScopedReadings[] stack = new ScopedReadings[sizes.length];
+          int c = 0;
+          for (int i = 0; i < sizes.length; i++) {
+            stack[i] = new ScopedReadings(array(c, sizes[i]), domains(c, sizes[i]));
+            c = c + sizes[i];
+          }
+          yield new StackedScopedReadings(stack);
+        }
+        case MLP_STATE -> {
+          double[][] activations = new double[sizes[0]][];
+          int c = 0;
+          for (int i = 0; i < activations.length; i++) {
+            activations[i] = array(c, sizes[1 + i]);
+            c = c + sizes[1 + i];
+          }
+          double[][][] weights = new double[sizes[1 + sizes[0]]][][];
+          int rowLengthIndex = mlpRowLengthsStart(sizes);
+          int w = 0;
+          for (int i = 0; i < weights.length; i++) {
+            weights[i] = new double[sizes[2 + sizes[0] + i]][];
+            for (int j = 0; j < weights[i].length; j++) {
+              weights[i][j] = new double[sizes[rowLengthIndex]];
+              System.arraycopy(weightValues, w, weights[i][j], 0, weights[i][j].length);
+              w = w + weights[i][j].length;
+              rowLengthIndex = rowLengthIndex + 1;
+            }
+          }
+          yield new MLPState(activations, weights, domains[0]);
+        }
+      };
+    }
+  }
+
+  private static void writeInts(DataOutput out, int[] ints) throws IOException {
+    out.writeInt(ints.length);
+    for (int i : ints) {
+      out.writeInt(i);
+    }
+  }
+
+  private static int[] readInts(DataInput in) throws IOException {
+    int[] ints = new int[in.readInt()];
+    for (int i = 0; i < ints.length; i++) {
+      ints[i] = in.readInt();
+    }
+    return ints;
+  }
+
+  private static long zigzag(long v) {
+    return (v << 1) ^ (v >> 63);
+  }
+
+  private static long unzigzag(long v) {
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  private static void writeVarLong(DataOutput out, long v) throws IOException {
+    while ((v & ~0x7FL) != 0) {
+      out.writeByte((int) ((v & 0x7F) | 0x80));
+      v = v >>> 7;
+    }
+    out.writeByte((int) v);
+  }
+
+  private static long readVarLong(DataInput in) throws IOException {
+    long v = 0;
+    int shift = 0;
+    while (true) {
+      byte b = in.readByte();
+      v = v | ((long) (b & 0x7F) << shift);
+      if ((b & 0x80) == 0) {
+        return v;
+      }
+      shift = shift + 7;
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.viewers;
+
+import it.units.erallab.hmsrobots.core.snapshots.Snapshot;
+import it.units.erallab.hmsrobots.core.snapshots.SnapshotListener;
+import it.units.erallab.hmsrobots.util.Grid;
+import it.units.erallab.hmsrobots.viewers.drawers.Drawer;
+
+import java.io.*;
+
+/**
+ * Feeds the snapshots of an episode recorded with {@link ReplayRecorder} to a {@link SnapshotListener}, e.g., a
+ * {@link FramesImageBuilder} or one cell of a {@link GridFileWriter}, and hence to any {@link Drawer}.
+ *
+ * @author eric
+ */
+public class ReplayPlayer {
+
+  private ReplayPlayer() {
+  }
+
+  public static void play(InputStream inputStream, SnapshotListener listener) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+    //an empty recording has no snapshots
+    in.mark(1);
+    if (in.read() < 0) {
+      return;
+    }
+    in.reset();
+    if (in.readInt() != ReplayFormat.MAGIC) {
+      throw new IOException("Not a recorded episode");
+    }
+    short version = in.readShort();
+    if (version != ReplayFormat.VERSION) {
+      throw new IOException(String.format("Unsupported recording version %d", version));
+    }
+    double resolution = in.readDouble();
+    ReplayFormat.Node schema = ReplayFormat.Node.readSchema(in);
+    while (true) {
+      byte marker;
+      try {
+        marker = in.readByte();
+      } catch (EOFException e) {
+        break;
+      }
+      if (marker == ReplayFormat.END_MARKER) {
+        break;
+      }
+      double t = in.readDouble();
+      boolean wanted = listener.wantsSnapshot(t);
+      Snapshot snapshot = schema.readFrame(in, resolution, wanted);
+      if (wanted) {
+        listener.listen(t, snapshot);
+      }
+    }
+  }
+
+  public static void play(File file, SnapshotListener listener) throws IOException {
+    try (InputStream inputStream = new FileInputStream(file)) {
+      play(inputStream, listener);
+    }
+  }
+
+  public static void save(File recordingFile, int w, int h, double startTime, double frameRate, VideoUtils.EncoderFacility encoder, File file, Drawer drawer) throws IOException {
+    GridFileWriter gridFileWriter = new GridFileWriter(
+        w, h, startTime, frameRate, encoder, file,
+        Grid.create(1, 1, recordingFile.getName()),
+        Grid.create(1, 1, drawer)
+    );
+    play(recordingFile, gridFileWriter.listener(0, 0));
+    gridFileWriter.flush();
+  }
+
+}
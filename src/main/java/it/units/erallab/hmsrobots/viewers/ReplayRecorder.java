@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) "Eric Medvet" 2021.
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package it.units.erallab.hmsrobots.viewers;
+
+import it.units.erallab.hmsrobots.core.snapshots.Snapshot;
+import it.units.erallab.hmsrobots.core.snapshots.SnapshotListener;
+
+import java.io.*;
+
+/**
+ * Records the snapshots of an episode in the compact binary format described in {@link ReplayFormat}, so that the
+ * episode can be later rendered with {@link ReplayPlayer} without re-running the simulation.
+ *
+ * @author eric
+ */
+public class ReplayRecorder implements SnapshotListener, Closeable {
+
+  public static final double DEFAULT_RESOLUTION = 1e-4;
+
+  private final DataOutputStream out;
+  private final double frameRate;
+  private final double resolution;
+
+  private ReplayFormat.Node schema;
+  private double lastT = Double.NEGATIVE_INFINITY;
+
+  public ReplayRecorder(OutputStream outputStream, double frameRate, double resolution) {
+    this.out = new DataOutputStream(new BufferedOutputStream(outputStream));
+    this.frameRate = frameRate;
+    this.resolution = resolution;
+  }
+
+  public ReplayRecorder(File file, double frameRate) throws IOException {
+    this(new FileOutputStream(file), frameRate, DEFAULT_RESOLUTION);
+  }
+
+  @Override
+  public boolean wantsSnapshot(double t) {
+    return frameRate <= 0d || t - lastT >= 1d / frameRate;
+  }
+
+  @Override
+  public void listen(double t, Snapshot snapshot) {
+    if (!wantsSnapshot(t)) {
+      return;
+    }
+    lastT = t;
+    try {
+      if (schema == null) {
+        schema = ReplayFormat.Node.of(snapshot);
+        out.writeInt(ReplayFormat.MAGIC);
+        out.writeShort(ReplayFormat.VERSION);
+        out.writeDouble(resolution);
+        schema.writeSchema(out);
+      }
+      out.writeByte(ReplayFormat.FRAME_MARKER);
+      out.writeDouble(t);
+      schema.writeFrame(snapshot, out, resolution);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    //without snapshots there is no schema, hence nothing is written and the recording is an empty replay
+    if (schema != null) {
+      out.writeByte(ReplayFormat.END_MARKER);
+    }
+    out.close();
+  }
+
+}
@@ -19,28 +19,34 @@ package it.units.erallab.hmsrobots.viewers.drawers;
 
 import it.units.erallab.hmsrobots.core.geometry.BoundingBox;
 import it.units.erallab.hmsrobots.core.snapshots.Snapshot;
+import it.units.erallab.hmsrobots.util.TimeSeriesBuffer;
 import it.units.erallab.hmsrobots.viewers.DrawingUtils;
 
 import java.awt.*;
 import java.awt.geom.Line2D;
-import java.util.Arrays;
-import java.util.SortedMap;
 import java.util.function.Function;
 
 /**
  * @author "Eric Medvet" on 2021/09/17 for 2dhmsr
  */
-public class SignalDrawer extends MemoryDrawer<Double> {
+public class SignalDrawer extends SubtreeDrawer {
 
+  private final Function<Snapshot, Double> function;
+  private final double windowT;
   private final Color signalColor;
   private final Color axesColor;
   private final Color textColor;
 
+  private final TimeSeriesBuffer memory;
+
   public SignalDrawer(Extractor extractor, Function<Snapshot, Double> function, double windowT, Color signalColor, Color axesColor, Color textColor) {
-    super(extractor, function, windowT);
+    super(extractor);
+    this.function = function;
+    this.windowT = windowT;
     this.signalColor = signalColor;
     this.axesColor = axesColor;
     this.textColor = textColor;
+    memory = new TimeSeriesBuffer();
   }
 
   public SignalDrawer(Extractor extractor, Function<Snapshot, Double> function, double windowT) {
@@ -48,7 +54,9 @@ public class SignalDrawer extends MemoryDrawer<Double> {
   }
 
   @Override
-  protected void innerDraw(double t, Snapshot snapshot, SortedMap<Double, Double> memory, Graphics2D g) {
+  protected void innerDraw(double t, Snapshot snapshot, Graphics2D g) {
+    memory.add(t, function.apply(snapshot));
+    memory.removeBefore(t - windowT);
     //prepare clips
     double textH = g.getFontMetrics().getMaxAscent();
     double textW = g.getFontMetrics().charWidth('m');
@@ -66,21 +74,22 @@ public class SignalDrawer extends MemoryDrawer<Double> {
     );
     //draw data
     g.setColor(signalColor);
-    double[] ts = memory.keySet().stream().mapToDouble(v -> v).toArray();
-    double[] vs = memory.values().stream().mapToDouble(v -> v).toArray();
-    double minV = Arrays.stream(vs).min().orElse(0d);
-    double maxV = Arrays.stream(vs).max().orElse(0d);
-    for (int i = 1; i < ts.length; i++) {
-      double x1 = pBB.max.x - (ts[ts.length - 1] - ts[i - 1]) / windowT * pBB.width();
-      double x2 = pBB.max.x - (ts[ts.length - 1] - ts[i]) / windowT * pBB.width();
-      double y1 = pBB.max.y - (vs[i - 1] - minV) / (maxV - minV) * pBB.height();
-      double y2 = pBB.max.y - (vs[i] - minV) / (maxV - minV) * pBB.height();
-      g.draw(new Line2D.Double(x1, y1, x2, y2));
+    double minV = memory.min();
+    double maxV = memory.max();
+    double maxT = memory.lastT();
+    Line2D.Double line = new Line2D.Double();
+    for (int i = 1; i < memory.size(); i++) {
+      line.setLine(
+          pBB.max.x - (maxT - memory.getT(i - 1)) / windowT * pBB.width(),
+          pBB.max.y - (memory.get(i - 1) - minV) / (maxV - minV) * pBB.height(),
+          pBB.max.x - (maxT - memory.getT(i)) / windowT * pBB.width(),
+          pBB.max.y - (memory.get(i) - minV) / (maxV - minV) * pBB.height()
+      );
+      g.draw(line);
     }
     //draw x-axis
     g.setColor(axesColor);
     g.draw(new Line2D.Double(pBB.min.x, pBB.max.y, pBB.max.x, pBB.max.y));
-    double maxT = memory.lastKey();
     for (double tickT = Math.ceil(maxT - windowT); tickT < maxT; tickT++) {
       g.setColor(axesColor);
       double x = (tickT - maxT + windowT) / windowT * (pBB.max.x - pBB.min.x) + pBB.min.x;
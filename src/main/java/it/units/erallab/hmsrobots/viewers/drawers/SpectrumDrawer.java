@@ -17,23 +17,27 @@
 
 package it.units.erallab.hmsrobots.viewers.drawers;
 
-import it.units.erallab.hmsrobots.behavior.BehaviorUtils;
+import it.units.erallab.hmsrobots.behavior.SlidingSpectrum;
 import it.units.erallab.hmsrobots.core.geometry.BoundingBox;
 import it.units.erallab.hmsrobots.core.snapshots.Snapshot;
-import it.units.erallab.hmsrobots.util.Domain;
 import it.units.erallab.hmsrobots.viewers.DrawingUtils;
 
 import java.awt.*;
 import java.awt.geom.Line2D;
 import java.awt.geom.Rectangle2D;
-import java.util.SortedMap;
+import java.util.Arrays;
 import java.util.function.Function;
 
 /**
+ * Draws the spectrum of a signal over the last {@code windowT} seconds. The spectrum is updated incrementally at each
+ * drawn frame; the sampling interval is taken from the first two frames.
+ *
  * @author "Eric Medvet" on 2021/09/17 for 2dhmsr
  */
-public class SpectrumDrawer extends MemoryDrawer<Double> {
+public class SpectrumDrawer extends SubtreeDrawer {
 
+  private final Function<Snapshot, Double> function;
+  private final double windowT;
   private final double minF;
   private final double maxF;
   private final int nBins;
@@ -43,8 +47,14 @@ public class SpectrumDrawer extends MemoryDrawer<Double> {
   private final Color axesColor;
   private final Color textColor;
 
+  private SlidingSpectrum slidingSpectrum;
+  private double lastT = Double.NaN;
+  private double lastValue;
+
   public SpectrumDrawer(Extractor extractor, Function<Snapshot, Double> function, double windowT, double minF, double maxF, int nBins, Color barFillColor, Color barLineColor, Color axesColor, Color textColor) {
-    super(extractor, function, windowT);
+    super(extractor);
+    this.function = function;
+    this.windowT = windowT;
     this.minF = minF;
     this.maxF = maxF;
     this.nBins = nBins;
@@ -59,12 +69,27 @@ public class SpectrumDrawer extends MemoryDrawer<Double> {
   }
 
   @Override
-  protected void innerDraw(double t, Snapshot snapshot, SortedMap<Double, Double> memory, Graphics2D g) {
-    //compute spectrum
-    SortedMap<Domain, Double> spectrum = BehaviorUtils.computeQuantizedSpectrum(memory, minF, maxF, nBins);
-    double maxValue = spectrum.values().stream().mapToDouble(d -> d).max().orElse(0d);
-    Domain[] domains = spectrum.keySet().toArray(Domain[]::new);
-    double[] values = spectrum.values().stream().mapToDouble(d -> d).toArray();
+  protected void innerDraw(double t, Snapshot snapshot, Graphics2D g) {
+    //update spectrum
+    double value = function.apply(snapshot);
+    if (slidingSpectrum == null) {
+      if (Double.isNaN(lastT)) {
+        lastT = t;
+      }
+      if (t <= lastT) {
+        lastValue = value;
+        return;
+      }
+      double dT = t - lastT;
+      slidingSpectrum = new SlidingSpectrum((int) Math.max(1, Math.round(windowT / dT)), dT, minF, maxF, nBins);
+      slidingSpectrum.add(lastValue);
+    }
+    if (t > lastT) {
+      slidingSpectrum.add(value);
+      lastT = t;
+    }
+    double[] values = slidingSpectrum.magnitudes();
+    double maxValue = Arrays.stream(values).max().orElse(0d);
     //prepare clips
     double textH = g.getFontMetrics().getMaxAscent();
     double textW = g.getFontMetrics().charWidth('m');
@@ -99,7 +124,7 @@ public class SpectrumDrawer extends MemoryDrawer<Double> {
       g.setColor(axesColor);
       g.draw(new Line2D.Double(x, pBB.max.y, x, pBB.max.y + textH));
       g.setColor(textColor);
-      String s = String.format("%.1f", (i < nBins) ? domains[i].getMin() : domains[i - 1].getMax());
+      String s = String.format("%.1f", minF + (maxF - minF) * (double) i / (double) nBins);
       g.drawString(s, (float) x - g.getFontMetrics().stringWidth(s) / 2f, (float) (pBB.max.y + 2 * textH));
     }
     //draw y-axis
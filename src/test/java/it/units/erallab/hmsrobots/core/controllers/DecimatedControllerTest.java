@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2020 Eric Medvet <eric.medvet@gmail.com> (as eric)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.units.erallab.hmsrobots.core.controllers;
+
+import it.units.erallab.hmsrobots.core.objects.ControllableVoxel;
+import it.units.erallab.hmsrobots.util.Grid;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class DecimatedControllerTest {
+
+  private static class CountingVoxel extends ControllableVoxel {
+    private final List<Double> forces = new ArrayList<>();
+
+    @Override
+    public void applyForce(double f) {
+      super.applyForce(f);
+      forces.add(f);
+    }
+  }
+
+  private static class RecordingController implements Controller<CountingVoxel> {
+    private final List<Integer> steps = new ArrayList<>();
+    private int step;
+
+    @Override
+    public void control(double t, Grid<? extends CountingVoxel> voxels) {
+      steps.add(step);
+      for (CountingVoxel voxel : voxels.values()) {
+        if (voxel != null) {
+          voxel.applyForce(steps.size() / 10d);
+        }
+      }
+    }
+
+    @Override
+    public RecordingController copy() {
+      return new RecordingController();
+    }
+
+    @Override
+    public void reset() {
+      steps.clear();
+    }
+  }
+
+  private static void assertDecimation(double dT, int steps, double interval, List<Integer> expectedSteps) {
+    Grid<CountingVoxel> voxels = Grid.create(3, 1, (x, y) -> x == 1 ? null : new CountingVoxel());
+    RecordingController inner = new RecordingController();
+    DecimatedController<CountingVoxel> controller = new DecimatedController<>(inner, steps, interval);
+    int nOfSteps = 10;
+    for (int k = 0; k < 2; k++) {
+      controller.reset();
+      voxels.values().stream().filter(v -> v != null).forEach(v -> v.forces.clear());
+      // time accumulated as in the simulation
+      double t = 0d;
+      for (int step = 0; step < nOfSteps; step++) {
+        t = t + dT;
+        inner.step = step;
+        controller.control(t, voxels);
+      }
+      assertEquals(expectedSteps, inner.steps);
+      for (CountingVoxel voxel : voxels.values()) {
+        if (voxel == null) {
+          continue;
+        }
+        // the voxel is actuated at every step, with the last force of the inner controller in between
+        assertEquals(nOfSteps, voxel.forces.size());
+        int calls = 0;
+        for (int step = 0; step < nOfSteps; step++) {
+          if (expectedSteps.contains(step)) {
+            calls = calls + 1;
+          }
+          assertEquals(calls / 10d, (double) voxel.forces.get(step));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test of control method with a number of steps, of class DecimatedController.
+   */
+  @Test
+  public void testSteps() {
+    System.out.println("steps");
+    assertDecimation(1d / 60d, 1, 0d, List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+    assertDecimation(1d / 60d, 3, 0d, List.of(0, 3, 6, 9));
+    assertDecimation(1d / 60d, 4, 0d, List.of(0, 4, 8));
+  }
+
+  /**
+   * Test of control method with a time interval, of class DecimatedController.
+   */
+  @Test
+  public void testInterval() {
+    System.out.println("interval");
+    // 20 Hz with 60 steps per second, where accumulated times are not exact multiples of the interval
+    assertDecimation(1d / 60d, 1, 1d / 20d, List.of(0, 3, 6, 9));
+    assertDecimation(0.02d, 1, 0.05d, List.of(0, 3, 6, 9));
+    // both constraints
+    assertDecimation(0.02d, 4, 0.05d, List.of(0, 4, 8));
+    assertDecimation(0.02d, 2, 0.05d, List.of(0, 3, 6, 9));
+  }
+
+  /**
+   * Test of getSnapshot method, of class DecimatedController.
+   */
+  @Test
+  public void testSnapshot() {
+    System.out.println("snapshot");
+    assertNull(new DecimatedController<>(new RecordingController(), 2).getSnapshot());
+  }
+
+}
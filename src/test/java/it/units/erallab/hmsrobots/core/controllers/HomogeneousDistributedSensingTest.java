@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2020 Eric Medvet <eric.medvet@gmail.com> (as eric)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.units.erallab.hmsrobots.core.controllers;
+
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.core.objects.SensingVoxel;
+import it.units.erallab.hmsrobots.tasks.locomotion.Locomotion;
+import it.units.erallab.hmsrobots.util.Grid;
+import it.units.erallab.hmsrobots.util.RobotUtils;
+import it.units.erallab.hmsrobots.util.SerializationUtils;
+import org.dyn4j.dynamics.Settings;
+import org.junit.jupiter.api.Test;
+
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class HomogeneousDistributedSensingTest {
+
+  @SuppressWarnings("unchecked")
+  private static double distance(Controller<SensingVoxel> controller, Grid<? extends SensingVoxel> body) {
+    Robot<SensingVoxel> robot = new Robot<>(controller, (Grid<SensingVoxel>) SerializationUtils.clone(body));
+    return new Locomotion(5d, Locomotion.createTerrain("flat"), new Settings()).apply(robot).getDistance();
+  }
+
+  /**
+   * Test of control method, of class HomogeneousDistributedSensing, against synchronous DistributedSensing.
+   */
+  @Test
+  public void testSameAsSynchronousDistributedSensing() {
+    System.out.println("sameAsSynchronousDistributedSensing");
+    int signals = 2;
+    Grid<? extends SensingVoxel> body = RobotUtils.buildSensorizingFunction("uniform-t+a+vxy-0")
+        .apply(RobotUtils.buildShape("biped-4x3"));
+    SensingVoxel voxel = body.values().stream().filter(Objects::nonNull).findFirst().orElseThrow();
+    MultiLayerPerceptron mlp = new MultiLayerPerceptron(
+        MultiLayerPerceptron.ActivationFunction.TANH,
+        DistributedSensing.nOfInputs(voxel, signals),
+        new int[]{5},
+        DistributedSensing.nOfOutputs(voxel, signals)
+    );
+    Random random = new Random(1);
+    double[] params = mlp.getParams();
+    for (int i = 0; i < params.length; i++) {
+      params[i] = random.nextGaussian();
+    }
+    mlp.setParams(params);
+    DistributedSensing distributedSensing = new DistributedSensing(body, signals, DistributedSensing.Evaluation.SYNCHRONOUS);
+    for (Grid.Entry<? extends SensingVoxel> entry : body) {
+      if (entry.getValue() != null) {
+        distributedSensing.getFunctions().set(entry.getX(), entry.getY(), mlp.copy());
+      }
+    }
+    double expected = distance(distributedSensing, body);
+    // batched evaluation of the perceptron
+    assertEquals(expected, distance(new HomogeneousDistributedSensing(body, signals, mlp.copy()), body));
+    // one evaluation per voxel of a generic function
+    MultiLayerPerceptron inner = mlp.copy();
+    TimedRealFunction function = new TimedRealFunction() {
+      @Override
+      public double[] apply(double t, double[] input) {
+        return inner.apply(t, input);
+      }
+
+      @Override
+      public int getInputDimension() {
+        return inner.getInputDimension();
+      }
+
+      @Override
+      public int getOutputDimension() {
+        return inner.getOutputDimension();
+      }
+    };
+    assertEquals(expected, distance(new HomogeneousDistributedSensing(body, signals, function), body));
+  }
+
+}
@@ -18,7 +18,10 @@ package it.units.erallab.hmsrobots.core.controllers;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
  * @author eric
@@ -89,4 +92,70 @@ public class MultiLayerPerceptronTest {
     assertArrayEquals(expResult, result);
   }
 
+  /**
+   * Test of apply method after pruning, of class PruningMultiLayerPerceptron.
+   */
+  @Test
+  public void testPrunedApply() {
+    System.out.println("prunedApply");
+    double[] input = new double[]{2};
+    double[] weights = new double[]{1, 0.1, 1, 2, 1, -0.2, 1};
+    double[] prunedWeights = new double[]{1, 0, 1, 2, 1, 0, 1};
+    PruningMultiLayerPerceptron instance = new PruningMultiLayerPerceptron(
+        MultiLayerPerceptron.ActivationFunction.RELU, 1, new int[]{2}, 1, weights,
+        1d, PruningMultiLayerPerceptron.Context.NETWORK, PruningMultiLayerPerceptron.Criterion.WEIGHT, 2d / 7d
+    );
+    MultiLayerPerceptron dense = new MultiLayerPerceptron(MultiLayerPerceptron.ActivationFunction.RELU, 1, new int[]{2}, 1, weights);
+    MultiLayerPerceptron pruned = new MultiLayerPerceptron(MultiLayerPerceptron.ActivationFunction.RELU, 1, new int[]{2}, 1, prunedWeights);
+    assertArrayEquals(dense.apply(input), instance.apply(0d, input));
+    assertArrayEquals(pruned.apply(input), instance.apply(1d, input));
+    assertArrayEquals(pruned.apply(input), instance.apply(2d, input));
+    assertArrayEquals(prunedWeights, MultiLayerPerceptron.flat(instance.getWeights(), instance.getNeurons()));
+  }
+
+  /**
+   * Test of the approximated activation functions, of enum MultiLayerPerceptron.ActivationFunction.
+   */
+  @Test
+  public void testFastActivationFunctions() {
+    System.out.println("fastActivationFunctions");
+    for (double x = -20d; x <= 20d; x = x + 0.001d) {
+      assertEquals(Math.tanh(x), MultiLayerPerceptron.ActivationFunction.TANH_FAST.applyAsDouble(x), 1e-4);
+      assertEquals(
+          MultiLayerPerceptron.ActivationFunction.SIGMOID.applyAsDouble(x),
+          MultiLayerPerceptron.ActivationFunction.SIGMOID_FAST.applyAsDouble(x),
+          5e-5
+      );
+    }
+    assertEquals(1d, MultiLayerPerceptron.ActivationFunction.TANH_FAST.applyAsDouble(100d));
+    assertEquals(0d, MultiLayerPerceptron.ActivationFunction.SIGMOID_FAST.applyAsDouble(-100d));
+  }
+
+  /**
+   * Test of applyBatch method, of class MultiLayerPerceptron.
+   */
+  @Test
+  public void testApplyBatch() {
+    System.out.println("applyBatch");
+    Random random = new Random(1);
+    MultiLayerPerceptron instance = new MultiLayerPerceptron(MultiLayerPerceptron.ActivationFunction.TANH, 3, new int[]{4, 2}, 2);
+    double[] params = instance.getParams();
+    for (int i = 0; i < params.length; i++) {
+      params[i] = random.nextGaussian();
+    }
+    instance.setParams(params);
+    double[][] inputs = new double[7][3];
+    for (int n : new int[]{2, 5, 3}) {
+      for (double[] input : inputs) {
+        for (int i = 0; i < input.length; i++) {
+          input[i] = random.nextGaussian();
+        }
+      }
+      double[][] outputs = instance.applyBatch(inputs, n);
+      for (int v = 0; v < n; v++) {
+        assertArrayEquals(instance.apply(inputs[v]), outputs[v]);
+      }
+    }
+  }
+
 }
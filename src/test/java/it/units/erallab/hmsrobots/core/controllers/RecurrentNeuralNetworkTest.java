@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 Eric Medvet <eric.medvet@gmail.com> (as eric)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.units.erallab.hmsrobots.core.controllers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class RecurrentNeuralNetworkTest {
+
+  private static final int N_OF_INPUT = 3;
+  private static final int N_OF_STATE = 4;
+  private static final int N_OF_OUTPUT = 2;
+
+  private static RecurrentNeuralNetwork randomNetwork(RecurrentNeuralNetwork.Cell cell, Random random) {
+    RecurrentNeuralNetwork rnn = new RecurrentNeuralNetwork(cell, N_OF_INPUT, N_OF_STATE, N_OF_OUTPUT);
+    double[] params = new double[rnn.getParams().length];
+    for (int i = 0; i < params.length; i++) {
+      params[i] = random.nextGaussian();
+    }
+    rnn.setParams(params);
+    return rnn;
+  }
+
+  private static double sigmoid(double x) {
+    return 1d / (1d + Math.exp(-x));
+  }
+
+  private static double weightedSum(double[] weights, double[] x, double[] s) {
+    double sum = weights[0];
+    for (int k = 0; k < x.length; k++) {
+      sum = sum + weights[1 + k] * x[k];
+    }
+    for (int k = 0; k < s.length; k++) {
+      sum = sum + weights[1 + x.length + k] * s[k];
+    }
+    return sum;
+  }
+
+  private static double[] referenceNextState(RecurrentNeuralNetwork.Cell cell, double[][][] w, double[] x, double[] s) {
+    double[] nextS = new double[s.length];
+    if (cell.equals(RecurrentNeuralNetwork.Cell.ELMAN)) {
+      for (int j = 0; j < s.length; j++) {
+        nextS[j] = Math.tanh(weightedSum(w[0][j], x, s));
+      }
+      return nextS;
+    }
+    double[] resetS = new double[s.length];
+    for (int j = 0; j < s.length; j++) {
+      resetS[j] = sigmoid(weightedSum(w[1][j], x, s)) * s[j];
+    }
+    for (int j = 0; j < s.length; j++) {
+      double z = sigmoid(weightedSum(w[0][j], x, s));
+      double candidate = Math.tanh(weightedSum(w[2][j], x, resetS));
+      nextS[j] = (1d - z) * s[j] + z * candidate;
+    }
+    return nextS;
+  }
+
+  /**
+   * Test of apply method, of class RecurrentNeuralNetwork, against a step-by-step reference implementation.
+   */
+  @Test
+  public void testApply() {
+    System.out.println("apply");
+    Random random = new Random(2);
+    for (RecurrentNeuralNetwork.Cell cell : RecurrentNeuralNetwork.Cell.values()) {
+      RecurrentNeuralNetwork instance = randomNetwork(cell, random);
+      double[][][] w = instance.getWeights();
+      double[] s = new double[N_OF_STATE];
+      for (int step = 0; step < 50; step++) {
+        double[] x = new double[N_OF_INPUT];
+        for (int i = 0; i < x.length; i++) {
+          x[i] = random.nextGaussian();
+        }
+        s = referenceNextState(cell, w, x, s);
+        double[] output = instance.apply(step, x);
+        assertArrayEquals(s, instance.getState(), 1e-12, cell.toString());
+        for (int o = 0; o < N_OF_OUTPUT; o++) {
+          double expected = Math.tanh(weightedSum(w[cell.getNOfGates()][o], new double[0], s));
+          assertEquals(expected, output[o], 1e-12, cell.toString());
+        }
+      }
+    }
+  }
+
+  /**
+   * Test of reset method, of class RecurrentNeuralNetwork.
+   */
+  @Test
+  public void testReset() {
+    System.out.println("reset");
+    Random random = new Random(3);
+    for (RecurrentNeuralNetwork.Cell cell : RecurrentNeuralNetwork.Cell.values()) {
+      RecurrentNeuralNetwork instance = randomNetwork(cell, random);
+      RecurrentNeuralNetwork fresh = instance.copy();
+      double[][] inputs = new double[10][N_OF_INPUT];
+      for (double[] input : inputs) {
+        for (int i = 0; i < input.length; i++) {
+          input[i] = random.nextGaussian();
+        }
+      }
+      for (double[] input : inputs) {
+        instance.apply(0d, input);
+      }
+      instance.reset();
+      assertArrayEquals(new double[N_OF_STATE], instance.getState(), cell.toString());
+      for (double[] input : inputs) {
+        assertArrayEquals(fresh.apply(0d, input), instance.apply(0d, input), cell.toString());
+      }
+    }
+  }
+
+  /**
+   * Test of getParams and setParams methods, of class RecurrentNeuralNetwork.
+   */
+  @Test
+  public void testParams() {
+    System.out.println("params");
+    Random random = new Random(4);
+    for (RecurrentNeuralNetwork.Cell cell : RecurrentNeuralNetwork.Cell.values()) {
+      RecurrentNeuralNetwork instance = new RecurrentNeuralNetwork(cell, N_OF_INPUT, N_OF_STATE, N_OF_OUTPUT);
+      double[] params = new double[RecurrentNeuralNetwork.countWeights(cell, N_OF_INPUT, N_OF_STATE, N_OF_OUTPUT)];
+      assertEquals(params.length, instance.getParams().length, cell.toString());
+      for (int i = 0; i < params.length; i++) {
+        params[i] = random.nextGaussian();
+      }
+      instance.setParams(params);
+      assertArrayEquals(params, instance.getParams(), cell.toString());
+      assertArrayEquals(params, RecurrentNeuralNetwork.flat(instance.getWeights()), cell.toString());
+      assertArrayEquals(
+          instance.getWeights(),
+          RecurrentNeuralNetwork.unflat(params, cell, N_OF_INPUT, N_OF_STATE, N_OF_OUTPUT),
+          cell.toString()
+      );
+    }
+  }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2020 Eric Medvet <eric.medvet@gmail.com> (as eric)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.units.erallab.hmsrobots.tasks.locomotion;
+
+import it.units.erallab.hmsrobots.behavior.BehaviorUtils;
+import it.units.erallab.hmsrobots.core.controllers.CentralizedSensing;
+import it.units.erallab.hmsrobots.core.controllers.DecimatedController;
+import it.units.erallab.hmsrobots.core.controllers.MultiLayerPerceptron;
+import it.units.erallab.hmsrobots.core.controllers.PruningMultiLayerPerceptron;
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.core.objects.SensingVoxel;
+import it.units.erallab.hmsrobots.core.snapshots.VoxelPoly;
+import it.units.erallab.hmsrobots.util.Grid;
+import it.units.erallab.hmsrobots.util.RobotUtils;
+import it.units.erallab.hmsrobots.util.SerializationUtils;
+import org.dyn4j.dynamics.Settings;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class LocomotionTest {
+
+  // noisy sensors and a controller pruning random weights, i.e., a robot whose behavior depends on the random seed
+  @SuppressWarnings("unchecked")
+  private static Robot<SensingVoxel> robot() {
+    Grid<? extends SensingVoxel> body = RobotUtils.buildSensorizingFunction("uniform-t+a+vxy-0.05")
+        .apply(RobotUtils.buildShape("biped-4x3"));
+    CentralizedSensing controller = new CentralizedSensing(body);
+    PruningMultiLayerPerceptron mlp = new PruningMultiLayerPerceptron(
+        MultiLayerPerceptron.ActivationFunction.TANH, controller.nOfInputs(), new int[]{5}, controller.nOfOutputs(),
+        1d, PruningMultiLayerPerceptron.Context.NETWORK, PruningMultiLayerPerceptron.Criterion.RANDOM, 0.5d
+    );
+    Random random = new Random(1);
+    double[] params = mlp.getParams();
+    for (int i = 0; i < params.length; i++) {
+      params[i] = random.nextGaussian();
+    }
+    mlp.setParams(params);
+    controller.setFunction(mlp);
+    return new Robot<>(new DecimatedController<>(controller, 2), (Grid<SensingVoxel>) body);
+  }
+
+  /**
+   * Test of apply method with a random seed, of class Locomotion, with episodes run sequentially and in parallel.
+   */
+  @Test
+  public void testSeededEpisodes() throws InterruptedException, ExecutionException {
+    System.out.println("seededEpisodes");
+    Locomotion locomotion = new Locomotion(5d, Locomotion.createTerrain("flat"), new Settings(), 42);
+    Robot<SensingVoxel> robot = robot();
+    Outcome first = locomotion.apply(robot);
+    Outcome second = locomotion.apply(robot);
+    assertEquals(first.getDistance(), second.getDistance());
+    assertEquals(first.getControlEnergy(), second.getControlEnergy());
+    int nOfThreads = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
+    try {
+      List<Future<Outcome>> futures = new ArrayList<>();
+      for (int i = 0; i < nOfThreads; i++) {
+        Robot<SensingVoxel> copy = SerializationUtils.clone(robot);
+        futures.add(executor.submit(() -> locomotion.apply(copy)));
+      }
+      for (Future<Outcome> future : futures) {
+        assertEquals(first.getDistance(), future.get().getDistance());
+        assertEquals(first.getControlEnergy(), future.get().getControlEnergy());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Outcome other = new Locomotion(5d, Locomotion.createTerrain("flat"), new Settings(), 43).apply(robot);
+    assertNotEquals(first.getDistance(), other.getDistance());
+  }
+
+  /**
+   * Test of apply method with a step observer and without retaining observations, of class Locomotion.
+   */
+  @Test
+  public void testNotRetainedObservations() {
+    System.out.println("notRetainedObservations");
+    Locomotion locomotion = new Locomotion(10d, Locomotion.createTerrain("flat"), new Settings(), 42);
+    Robot<SensingVoxel> robot = robot();
+    Outcome full = locomotion.apply(robot);
+    GaitTracker tracker = new GaitTracker(0.5d, 5d, 4);
+    List<Double> observedTs = new ArrayList<>();
+    Outcome outcome = locomotion.apply(robot, null, (t, observation) -> {
+      observedTs.add(t);
+      tracker.observe(t, observation);
+    }, false);
+    assertEquals(new ArrayList<>(full.getObservations().keySet()), observedTs);
+    assertEquals(2, outcome.getObservations().size());
+    assertEquals(full.getObservations().firstKey(), outcome.getObservations().firstKey());
+    assertEquals(full.getObservations().lastKey(), outcome.getObservations().lastKey());
+    assertEquals(full.getDistance(), outcome.getDistance());
+    assertEquals(full.getControlEnergy(), outcome.getControlEnergy());
+    SortedMap<Double, Collection<? extends VoxelPoly>> polies = new TreeMap<>();
+    full.getObservations().forEach((t, observation) -> polies.put(
+        t,
+        observation.getVoxelPolies().values().stream().filter(Objects::nonNull).collect(Collectors.toList())
+    ));
+    assertEquals(BehaviorUtils.computeMainGait(0.5d, 5d, polies, 4).toString(), tracker.getMainGait().toString());
+  }
+
+}
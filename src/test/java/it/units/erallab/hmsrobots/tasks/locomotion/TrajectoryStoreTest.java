@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2020 Eric Medvet <eric.medvet@gmail.com> (as eric)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.units.erallab.hmsrobots.tasks.locomotion;
+
+import it.units.erallab.hmsrobots.core.controllers.CentralizedSensing;
+import it.units.erallab.hmsrobots.core.controllers.MultiLayerPerceptron;
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.core.objects.SensingVoxel;
+import it.units.erallab.hmsrobots.util.Grid;
+import it.units.erallab.hmsrobots.util.RobotUtils;
+import org.dyn4j.dynamics.Settings;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class TrajectoryStoreTest {
+
+  private static Outcome run() {
+    Grid<? extends SensingVoxel> body = RobotUtils.buildSensorizingFunction("uniform-t+a+vxy-0")
+        .apply(RobotUtils.buildShape("biped-4x3"));
+    CentralizedSensing controller = new CentralizedSensing(body);
+    MultiLayerPerceptron mlp = new MultiLayerPerceptron(
+        MultiLayerPerceptron.ActivationFunction.TANH, controller.nOfInputs(), new int[]{5}, controller.nOfOutputs()
+    );
+    Random random = new Random(1);
+    double[] params = mlp.getParams();
+    for (int i = 0; i < params.length; i++) {
+      params[i] = random.nextGaussian();
+    }
+    mlp.setParams(params);
+    controller.setFunction(mlp);
+    @SuppressWarnings("unchecked")
+    Robot<SensingVoxel> robot = new Robot<>(controller, (Grid<SensingVoxel>) body);
+    return new Locomotion(5d, Locomotion.createTerrain("flat"), new Settings()).apply(robot);
+  }
+
+  private static Path tempFile() throws IOException {
+    Path path = Files.createTempFile("trajectories", ".trj");
+    Files.delete(path);
+    path.toFile().deleteOnExit();
+    return path;
+  }
+
+  /**
+   * Test of descriptors, of class TrajectoryStore.Episode.
+   */
+  @Test
+  public void testDescriptors() throws IOException {
+    System.out.println("descriptors");
+    Outcome outcome = run();
+    Path path = tempFile();
+    try (TrajectoryStore store = new TrajectoryStore(path)) {
+      store.add("run", outcome);
+    }
+    try (TrajectoryStore store = new TrajectoryStore(path)) {
+      TrajectoryStore.Episode episode = store.get("run");
+      assertEquals(outcome.getObservations().size(), episode.nOfSteps());
+      assertEquals(outcome.getCenterXPositionSpectrum(0d, 5d, 8), episode.getCenterXPositionSpectrum(0d, 5d, 8));
+      assertEquals(outcome.getCenterYPositionSpectrum(0d, 5d, 8), episode.getCenterYPositionSpectrum(0d, 5d, 8));
+      assertEquals(outcome.getCenterXVelocitySpectrum(0d, 5d, 8), episode.getCenterXVelocitySpectrum(0d, 5d, 8));
+      assertEquals(outcome.getCenterYVelocitySpectrum(0d, 5d, 8), episode.getCenterYVelocitySpectrum(0d, 5d, 8));
+      assertEquals(outcome.getCenterAngleSpectrum(0d, 5d, 8), episode.getCenterAngleSpectrum(0d, 5d, 8));
+      assertEquals(outcome.getFootprintsSpectra(4, 0d, 5d, 8), episode.getFootprintsSpectra(4, 0d, 5d, 8));
+      assertEquals(outcome.getDistance(), episode.toOutcome().getDistance());
+      assertEquals(outcome.getControlEnergy(), episode.toOutcome().getControlEnergy());
+    }
+  }
+
+  /**
+   * Test of opening a store whose last episode is truncated, of class TrajectoryStore.
+   */
+  @Test
+  public void testTruncated() throws IOException {
+    System.out.println("truncated");
+    Path path = tempFile();
+    try (TrajectoryStore store = new TrajectoryStore(path)) {
+      store.add("run", run().subOutcome(0d, 1d));
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 1);
+    }
+    assertThrows(IOException.class, () -> new TrajectoryStore(path).close());
+  }
+
+}
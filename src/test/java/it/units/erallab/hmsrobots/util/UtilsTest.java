@@ -16,9 +16,29 @@
  */
 package it.units.erallab.hmsrobots.util;
 
+import it.units.erallab.hmsrobots.core.controllers.CentralizedSensing;
+import it.units.erallab.hmsrobots.core.controllers.MultiLayerPerceptron;
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.core.objects.SensingVoxel;
 import org.junit.jupiter.api.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * @author Eric Medvet <eric.medvet@gmail.com>
@@ -89,4 +109,217 @@ public class UtilsTest {
     assertEquals(expResult, result);
   }
 
+  /**
+   * Test of conversions of primitive grids, of class BooleanGrid, IntGrid, and DoubleGrid.
+   */
+  @Test
+  public void testPrimitiveGridConversion() {
+    System.out.println("primitiveGridConversion");
+    Grid<Boolean> bGrid = Grid.create(9, 8, (x, y) -> (x * y) % 3 == 1);
+    BooleanGrid booleanGrid = BooleanGrid.create(bGrid);
+    assertEquals(bGrid, booleanGrid.toGrid());
+    assertEquals(bGrid.count(b -> b), booleanGrid.count());
+    assertEquals(false, booleanGrid.get(9, 0));
+    Grid<Integer> iGrid = Grid.create(4, 3, (x, y) -> x - 2 * y);
+    assertEquals(iGrid, IntGrid.create(iGrid).toGrid());
+    assertEquals((int) iGrid.get(3, 1), IntGrid.create(iGrid).columns()[3][1]);
+    Grid<Double> dGrid = Grid.create(3, 5, (x, y) -> x / (y + 1d));
+    assertEquals(dGrid, DoubleGrid.create(dGrid).toGrid());
+    assertEquals((double) dGrid.get(2, 4), DoubleGrid.create(dGrid).rows()[4][2]);
+  }
+
+  /**
+   * Test of rectangle filling and Hamming distance, of class BooleanGrid.
+   */
+  @Test
+  public void testBooleanGridFillAndHammingDistance() {
+    System.out.println("booleanGridFillAndHammingDistance");
+    Grid<Boolean> bGrid = Grid.create(70, 3, (x, y) -> x >= 2 && x <= 66 && y >= 1);
+    BooleanGrid booleanGrid = new BooleanGrid(70, 3);
+    booleanGrid.fill(2, 1, 66, 5, true);
+    assertEquals(bGrid, booleanGrid.toGrid());
+    BooleanGrid other = BooleanGrid.copy(booleanGrid);
+    other.fill(0, 0, 3, 1, false);
+    assertEquals(2, booleanGrid.hammingDistance(other));
+    assertThrows(IllegalArgumentException.class, () -> booleanGrid.hammingDistance(new BooleanGrid(3, 70)));
+  }
+
+  /**
+   * Test of sliding window and running extrema, of class TimeSeriesBuffer.
+   */
+  @Test
+  public void testTimeSeriesBuffer() {
+    System.out.println("timeSeriesBuffer");
+    TimeSeriesBuffer buffer = new TimeSeriesBuffer(2, 2);
+    double[] values = new double[100];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = Math.sin(i * 0.7) * i;
+      buffer.add(i, values[i], -values[i]);
+      buffer.removeBefore(i - 9);
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int j = Math.max(0, i - 9); j <= i; j++) {
+        min = Math.min(min, values[j]);
+        max = Math.max(max, values[j]);
+      }
+      assertEquals(Math.min(i + 1, 10), buffer.size());
+      assertEquals(min, buffer.min(0));
+      assertEquals(max, buffer.max(0));
+      assertEquals(-max, buffer.min(1));
+      assertEquals(values[i], buffer.get(buffer.size() - 1));
+    }
+    buffer.clear();
+    assertEquals(0, buffer.size());
+    assertEquals(Double.NaN, buffer.max(0));
+  }
+
+  // GZIPPED_JSON serialization of robot() produced by the string-based implementation of SerializationUtils
+  private static final String LEGACY_GZIPPED_JSON_ROBOT = "H4sIAAAAAAAA/+xU34ubQBD+X/bZivEaWnyqqKEBY0oMpRDk2Jgx2bLuht31Lu3h/94Z9SztW0of7yFhv/lmvvmJL6zWyhktJRgWvbBPteTWsogJ53dKOOuD4VLyo39prdFHjZZaG/B/h1k/AXxzKX7CqQRlhTozj6lts1bXzqFYOKBt52bYdKp2Qqt/TrnppBM5/wHmC5garkgoTMpR9YmT8mrOwPZx8Rm5ZxDnC+U/HA7vAn/p4V+49AI/qLzD9KTfh2VVVVgxdKhJ7qEXVn3vsSd9A2mp5OehiQuLFh5WDS153dGIPn6HGsE0rK+kiwVacYIc1Nmh8IMfeKxFuXI27qgvFgX+e3S9Ggxcsegj+Y0oJe5hjMqFAm5S3l5pGWhfjPZYnTv5N9EYMY1qEZCcAeuE60bTHIoskVK0wiW0CT4ErSRHHWc6GN0SXJCwM9FwaZHhBvhQ/4bfUpCOk3CII59qL2veNFqe8EmzZOU6zR6zb/tsV8Q5jmbA6+JPnOy2ZYkgyYr9Ls4nXFEdt5XGq6CGho4aQhtwF33C9aTrEk8iyWjkuAFt7lzfFOSXunGFNi1d/nBzs+BdZ/0qF7/OiPV91Xtv9/R2T//xnvAL9gsAAP//AwBmR4KF7AUAAA==";
+
+  private static final SerializationUtils.Mode[] ROUND_TRIP_MODES = new SerializationUtils.Mode[]{
+      SerializationUtils.Mode.BINARY,
+      SerializationUtils.Mode.JSON,
+      SerializationUtils.Mode.GZIPPED_JSON
+  };
+
+  @SuppressWarnings("unchecked")
+  private static Robot<SensingVoxel> robot() {
+    Grid<? extends SensingVoxel> body = RobotUtils.buildSensorizingFunction("uniform-a-0")
+        .apply(RobotUtils.buildShape("box-2x1"));
+    CentralizedSensing controller = new CentralizedSensing(body);
+    MultiLayerPerceptron mlp = new MultiLayerPerceptron(
+        MultiLayerPerceptron.ActivationFunction.TANH, controller.nOfInputs(), new int[0], controller.nOfOutputs()
+    );
+    double[] params = mlp.getParams();
+    for (int i = 0; i < params.length; i++) {
+      params[i] = (i - 2) * 0.25d;
+    }
+    mlp.setParams(params);
+    controller.setFunction(mlp);
+    return new Robot<>(controller, (Grid<SensingVoxel>) body);
+  }
+
+  /**
+   * Test of serialize and deserialize methods with strings, of class SerializationUtils.
+   */
+  @Test
+  public void testSerializationRoundTrip() {
+    System.out.println("serializationRoundTrip");
+    Robot<SensingVoxel> robot = robot();
+    String json = SerializationUtils.serialize(robot, SerializationUtils.Mode.JSON);
+    for (SerializationUtils.Mode mode : ROUND_TRIP_MODES) {
+      Robot<?> deserialized = SerializationUtils.deserialize(SerializationUtils.serialize(robot, mode), Robot.class, mode);
+      assertEquals(json, SerializationUtils.serialize(deserialized, SerializationUtils.Mode.JSON), mode.toString());
+    }
+  }
+
+  /**
+   * Test of serialize and deserialize methods with streams, paths, and buffers, of class SerializationUtils.
+   */
+  @Test
+  public void testSerializationStreams() throws IOException {
+    System.out.println("serializationStreams");
+    Robot<SensingVoxel> robot = robot();
+    String json = SerializationUtils.serialize(robot, SerializationUtils.Mode.JSON);
+    Path path = Files.createTempFile("robot", ".ser");
+    path.toFile().deleteOnExit();
+    for (SerializationUtils.Mode mode : ROUND_TRIP_MODES) {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      SerializationUtils.serialize(robot, baos, mode);
+      Robot<?> fromStream = SerializationUtils.deserialize(new ByteArrayInputStream(baos.toByteArray()), Robot.class, mode);
+      assertEquals(json, SerializationUtils.serialize(fromStream, SerializationUtils.Mode.JSON), mode.toString());
+      SerializationUtils.serialize(robot, path, mode);
+      Robot<?> fromPath = SerializationUtils.deserialize(path, Robot.class, mode);
+      assertEquals(json, SerializationUtils.serialize(fromPath, SerializationUtils.Mode.JSON), mode.toString());
+      ByteBuffer buffer = SerializationUtils.serializeToBuffer(robot, mode);
+      assertEquals(baos.size(), buffer.remaining(), mode.toString());
+      Robot<?> fromBuffer = SerializationUtils.deserialize(buffer, Robot.class, mode);
+      assertEquals(json, SerializationUtils.serialize(fromBuffer, SerializationUtils.Mode.JSON), mode.toString());
+      ByteBuffer directBuffer = ByteBuffer.allocateDirect(buffer.remaining()).put(buffer.duplicate());
+      directBuffer.flip();
+      Robot<?> fromDirectBuffer = SerializationUtils.deserialize(directBuffer, Robot.class, mode);
+      assertEquals(json, SerializationUtils.serialize(fromDirectBuffer, SerializationUtils.Mode.JSON), mode.toString());
+    }
+  }
+
+  /**
+   * Test of deserialize method with strings produced before streaming serialization, of class SerializationUtils.
+   */
+  @Test
+  public void testLegacyDeserialization() {
+    System.out.println("legacyDeserialization");
+    Robot<?> deserialized = SerializationUtils.deserialize(LEGACY_GZIPPED_JSON_ROBOT, Robot.class, SerializationUtils.Mode.GZIPPED_JSON);
+    String json = SerializationUtils.serialize(robot(), SerializationUtils.Mode.JSON);
+    assertEquals(json, SerializationUtils.serialize(deserialized, SerializationUtils.Mode.JSON));
+    Robot<?> deserializedWithDefaultMode = SerializationUtils.deserialize(LEGACY_GZIPPED_JSON_ROBOT, Robot.class);
+    assertEquals(json, SerializationUtils.serialize(deserializedWithDefaultMode, SerializationUtils.Mode.JSON));
+  }
+
+  private static String serializedMlp(double value) {
+    MultiLayerPerceptron mlp = new MultiLayerPerceptron(MultiLayerPerceptron.ActivationFunction.TANH, 2, new int[]{3}, 1);
+    double[] params = mlp.getParams();
+    Arrays.fill(params, value);
+    mlp.setParams(params);
+    return SerializationUtils.serialize(mlp);
+  }
+
+  /**
+   * Test of hit counting, LRU eviction, and copying, of class DeserializationCache.
+   */
+  @Test
+  public void testDeserializationCache() {
+    System.out.println("deserializationCache");
+    DeserializationCache cache = new DeserializationCache(2);
+    String a = serializedMlp(1d);
+    String b = serializedMlp(2d);
+    String c = serializedMlp(3d);
+    MultiLayerPerceptron first = cache.deserialize(a, MultiLayerPerceptron.class);
+    MultiLayerPerceptron second = cache.deserialize(a, MultiLayerPerceptron.class);
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getHits());
+    assertNotSame(first, second);
+    double[] params = first.getParams();
+    params[0] = -1d;
+    first.setParams(params);
+    assertEquals(1d, second.getParams()[0]);
+    assertEquals(1d, cache.deserialize(a, MultiLayerPerceptron.class).getParams()[0]);
+    cache.deserialize(b, MultiLayerPerceptron.class);
+    cache.deserialize(a, MultiLayerPerceptron.class);
+    // c evicts b, which is the least recently used
+    cache.deserialize(c, MultiLayerPerceptron.class);
+    assertEquals(2, cache.size());
+    assertEquals(3, cache.getMisses());
+    cache.deserialize(a, MultiLayerPerceptron.class);
+    assertEquals(3, cache.getMisses());
+    assertEquals(2d, cache.deserialize(b, MultiLayerPerceptron.class).getParams()[0]);
+    assertEquals(4, cache.getMisses());
+    assertEquals(4, cache.getHits());
+  }
+
+  /**
+   * Test of concurrent deserialization of the same string, of class DeserializationCache.
+   */
+  @Test
+  public void testDeserializationCacheConcurrency() throws InterruptedException, ExecutionException {
+    System.out.println("deserializationCacheConcurrency");
+    DeserializationCache cache = new DeserializationCache(4);
+    String serialized = SerializationUtils.serialize(robot());
+    String json = SerializationUtils.serialize(robot(), SerializationUtils.Mode.JSON);
+    int nOfThreads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(nOfThreads);
+    try {
+      List<Future<Robot>> futures = new ArrayList<>();
+      for (int i = 0; i < nOfThreads; i++) {
+        futures.add(executor.submit(() -> cache.deserialize(serialized, Robot.class)));
+      }
+      for (Future<Robot> future : futures) {
+        assertEquals(json, SerializationUtils.serialize(future.get(), SerializationUtils.Mode.JSON));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, cache.getMisses());
+    assertEquals(nOfThreads - 1, cache.getHits());
+  }
+
 }
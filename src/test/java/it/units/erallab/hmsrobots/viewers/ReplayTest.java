@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 Eric Medvet <eric.medvet@gmail.com> (as eric)
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *  See the GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package it.units.erallab.hmsrobots.viewers;
+
+import it.units.erallab.hmsrobots.core.controllers.CentralizedSensing;
+import it.units.erallab.hmsrobots.core.controllers.MultiLayerPerceptron;
+import it.units.erallab.hmsrobots.core.controllers.PruningMultiLayerPerceptron;
+import it.units.erallab.hmsrobots.core.geometry.Point2;
+import it.units.erallab.hmsrobots.core.geometry.Poly;
+import it.units.erallab.hmsrobots.core.geometry.Vector;
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.core.objects.SensingVoxel;
+import it.units.erallab.hmsrobots.core.snapshots.*;
+import it.units.erallab.hmsrobots.tasks.locomotion.Locomotion;
+import it.units.erallab.hmsrobots.util.Grid;
+import it.units.erallab.hmsrobots.util.RobotUtils;
+import org.dyn4j.dynamics.Settings;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author "Eric Medvet" on 2021/10/19 for 2dhmsr
+ */
+public class ReplayTest {
+
+  private static class CollectingListener implements SnapshotListener {
+    private final List<Double> ts = new ArrayList<>();
+    private final List<Snapshot> snapshots = new ArrayList<>();
+
+    @Override
+    public void listen(double t, Snapshot snapshot) {
+      ts.add(t);
+      snapshots.add(snapshot);
+    }
+  }
+
+  /**
+   * Test of recording and playing back an episode, of classes ReplayRecorder and ReplayPlayer.
+   */
+  @Test
+  public void testRecordAndPlay() throws IOException {
+    System.out.println("recordAndPlay");
+    Grid<? extends SensingVoxel> body = RobotUtils.buildSensorizingFunction("uniform-t+a+vxy-0")
+        .apply(RobotUtils.buildShape("biped-4x3"));
+    CentralizedSensing controller = new CentralizedSensing(body);
+    // the weights change once, when pruning
+    PruningMultiLayerPerceptron mlp = new PruningMultiLayerPerceptron(
+        MultiLayerPerceptron.ActivationFunction.TANH, controller.nOfInputs(), new int[]{5}, controller.nOfOutputs(),
+        1d, PruningMultiLayerPerceptron.Context.NETWORK, PruningMultiLayerPerceptron.Criterion.WEIGHT, 0.5d
+    );
+    Random random = new Random(1);
+    double[] params = mlp.getParams();
+    for (int i = 0; i < params.length; i++) {
+      params[i] = random.nextGaussian();
+    }
+    mlp.setParams(params);
+    controller.setFunction(mlp);
+    @SuppressWarnings("unchecked")
+    Robot<SensingVoxel> robot = new Robot<>(controller, (Grid<SensingVoxel>) body);
+    CollectingListener original = new CollectingListener();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ReplayRecorder recorder = new ReplayRecorder(bytes, 0d, ReplayRecorder.DEFAULT_RESOLUTION);
+    new Locomotion(3d, Locomotion.createTerrain("flat"), new Settings()).apply(robot, (t, snapshot) -> {
+      original.listen(t, snapshot);
+      recorder.listen(t, snapshot);
+    });
+    recorder.close();
+    CollectingListener replayed = new CollectingListener();
+    ReplayPlayer.play(new ByteArrayInputStream(bytes.toByteArray()), replayed);
+    assertEquals(original.ts, replayed.ts);
+    for (int i = 0; i < original.snapshots.size(); i++) {
+      assertSnapshotEquals(original.snapshots.get(i), replayed.snapshots.get(i));
+    }
+  }
+
+  /**
+   * Test of recording and playing back an episode without snapshots, of classes ReplayRecorder and ReplayPlayer.
+   */
+  @Test
+  public void testEmptyRecording() throws IOException {
+    System.out.println("emptyRecording");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new ReplayRecorder(bytes, 0d, ReplayRecorder.DEFAULT_RESOLUTION).close();
+    CollectingListener replayed = new CollectingListener();
+    ReplayPlayer.play(new ByteArrayInputStream(bytes.toByteArray()), replayed);
+    assertEquals(0, replayed.snapshots.size());
+  }
+
+  private static void assertSnapshotEquals(Snapshot expected, Snapshot actual) {
+    // classes of lambdas cannot be recovered by name
+    if (!expected.getSnapshottableClass().isSynthetic()) {
+      assertEquals(expected.getSnapshottableClass(), actual.getSnapshottableClass());
+    }
+    double[] expectedValues = values(expected.getContent());
+    double[] actualValues = values(actual.getContent());
+    assertEquals(expectedValues.length, actualValues.length);
+    for (int i = 0; i < expectedValues.length; i++) {
+      assertEquals(expectedValues[i], actualValues[i], ReplayRecorder.DEFAULT_RESOLUTION);
+    }
+    // mechanical parts of voxels are not recorded
+    List<Snapshot> expectedChildren = new ArrayList<>();
+    for (Snapshot child : expected.getChildren()) {
+      boolean mechanical = (child.getContent() instanceof Poly && !(child.getContent() instanceof VoxelPoly))
+          || child.getContent() instanceof Vector;
+      if (!(expected.getContent() instanceof VoxelPoly && mechanical)) {
+        expectedChildren.add(child);
+      }
+    }
+    assertEquals(expectedChildren.size(), actual.getChildren().size());
+    for (int i = 0; i < expectedChildren.size(); i++) {
+      assertSnapshotEquals(expectedChildren.get(i), actual.getChildren().get(i));
+    }
+  }
+
+  private static double[] values(Object content) {
+    List<Double> values = new ArrayList<>();
+    if (content instanceof Poly) {
+      for (Point2 point : ((Poly) content).getVertexes()) {
+        values.add(point.x);
+        values.add(point.y);
+      }
+    }
+    if (content instanceof VoxelPoly) {
+      VoxelPoly poly = (VoxelPoly) content;
+      values.addAll(List.of(
+          poly.getAngle(), poly.getLinearVelocity().x, poly.getLinearVelocity().y, poly.isTouchingGround() ? 1d : 0d,
+          poly.getAreaRatio(), poly.getAreaRatioEnergy(), poly.getLastAppliedForce(), poly.getControlEnergy()
+      ));
+    } else if (content instanceof RobotShape) {
+      values.addAll(List.of(
+          ((RobotShape) content).boundingBox().min.x, ((RobotShape) content).boundingBox().min.y,
+          ((RobotShape) content).boundingBox().max.x, ((RobotShape) content).boundingBox().max.y
+      ));
+    } else if (content instanceof ScopedReadings) {
+      for (double v : ((ScopedReadings) content).getReadings()) {
+        values.add(v);
+      }
+    } else if (content instanceof StackedScopedReadings) {
+      for (ScopedReadings scopedReadings : ((StackedScopedReadings) content).getScopedReadings()) {
+        for (double v : scopedReadings.getReadings()) {
+          values.add(v);
+        }
+      }
+    } else if (content instanceof MLPState) {
+      for (double[] layerValues : ((MLPState) content).getActivationValues()) {
+        for (double v : layerValues) {
+          values.add(v);
+        }
+      }
+      for (double[][] layerWeights : ((MLPState) content).getWeights()) {
+        for (double[] neuronWeights : layerWeights) {
+          for (double v : neuronWeights) {
+            values.add(v);
+          }
+        }
+      }
+    }
+    return values.stream().mapToDouble(v -> v).toArray();
+  }
+
+}